@@ -0,0 +1,41 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Thrown, if waiting for a lock would result in a deadlock (see {@link Locker#withDeadlockDetection()}).
+ * <p>
+ * The cycle is described by the threads and the elements they wait for: The thread at index i waits for the element at index i, which is held by the thread
+ * at index i+1 (and the last element is held by the first thread, which is the one the exception is thrown in).
+ */
+public class DeadlockException extends RuntimeException {
+
+    private static final long serialVersionUID = 4621785190224750861L;
+
+    private final transient List<Thread> threads;
+
+    private final transient List<Object> elements;
+
+    public DeadlockException(String message, List<Thread> threads, List<Object> elements) {
+        super(message);
+        this.threads = Collections.unmodifiableList(threads);
+        this.elements = Collections.unmodifiableList(elements);
+    }
+
+    public List<Thread> getThreads() {
+        return threads;
+    }
+
+    public List<Object> getElements() {
+        return elements;
+    }
+
+}
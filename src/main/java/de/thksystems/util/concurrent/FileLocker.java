@@ -0,0 +1,248 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Locking util for several processes (JVMs) on the same host: Each element is locked by a (per-element) lock file in a shared directory using
+ * {@link FileChannel#lock()}.
+ * <p>
+ * Inside a JVM, the elements are locked by a {@link Locker} first, so only one thread per JVM competes for the file lock. Reentrant locking does not touch
+ * the file system at all.
+ * <p>
+ * Only one instance per directory must be used in a JVM. The lock files are not deleted (deleting them could break the mutual exclusion).
+ */
+public final class FileLocker<T> implements LockerI<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(FileLocker.class);
+
+    private static final String LOCK_FILE_SUFFIX = ".lock";
+
+    /**
+     * Lock file of an element held by the current JVM.
+     */
+    private static final class FileHold {
+
+        private final FileChannel channel;
+
+        private final FileLock fileLock;
+
+        private FileHold(FileChannel channel, FileLock fileLock) {
+            this.channel = channel;
+            this.fileLock = fileLock;
+        }
+    }
+
+    private final Path directory;
+
+    private final Function<T, String> fileNameFunction;
+
+    private final Locker<T> localLocker = new Locker<>();
+
+    /**
+     * File locks of the elements held by the current JVM. (Only accessed by the thread holding the element in the local locker.)
+     */
+    private final ConcurrentMap<T, FileHold> fileHolds = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a locker using lock files in the given directory named by the (URL encoded) string representation of the elements.
+     */
+    public FileLocker(Path directory) {
+        this(directory, FileLocker::encodeFileName);
+    }
+
+    /**
+     * Creates a locker using lock files in the given directory named by the given function (plus '.lock'). Distinct elements must result in distinct names.
+     */
+    public FileLocker(Path directory, Function<T, String> fileNameFunction) {
+        this.directory = directory;
+        this.fileNameFunction = fileNameFunction;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            String msg = String.format("Creating lock directory '%s' failed: %s", directory, e.getMessage());
+            LOG.error(msg, e);
+            throw new RuntimeException(msg, e);
+        }
+    }
+
+    private static String encodeFileName(Object element) {
+        try {
+            return URLEncoder.encode(String.valueOf(element), StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Path getLockFile(T element) {
+        return directory.resolve(fileNameFunction.apply(element) + LOCK_FILE_SUFFIX);
+    }
+
+    private FileChannel openChannel(T element) throws IOException {
+        return FileChannel.open(getLockFile(element), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+    }
+
+    /**
+     * Tries to lock the given element (in this JVM and for other processes).
+     *
+     * @return <code>true</code> in case of succeeded lock, <code>false</code> otherwise
+     */
+    @Override
+    public boolean tryLock(T element) {
+        if (!localLocker.tryLock(element)) {
+            return false;
+        }
+        if (localLocker.getHoldCount(element) > 1L) {
+            return true;
+        }
+        boolean locked = false;
+        try {
+            FileChannel channel = openChannel(element);
+            try {
+                FileLock fileLock = channel.tryLock();
+                if (fileLock != null) {
+                    fileHolds.put(element, new FileHold(channel, fileLock));
+                    locked = true;
+                    LOG.trace("Locked file for: {}", element);
+                } else {
+                    LOG.debug("Element '{}' is already locked by another process", element);
+                }
+            } catch (OverlappingFileLockException e) {
+                LOG.debug("Element '{}' is already locked by another locker of this JVM", element);
+            } finally {
+                if (!locked) {
+                    channel.close();
+                }
+            }
+            return locked;
+        } catch (IOException e) {
+            String msg = String.format("Locking file for '%s' failed: %s", element, e.getMessage());
+            LOG.error(msg, e);
+            throw new RuntimeException(msg, e);
+        } finally {
+            if (!locked) {
+                localLocker.unlock(element);
+            }
+        }
+    }
+
+    /**
+     * Locks the given element (in this JVM and for other processes). If it is already locked, the current thread waits until it is unlocked.
+     */
+    @Override
+    public void lock(T element) {
+        localLocker.lock(element);
+        if (localLocker.getHoldCount(element) > 1L) {
+            return;
+        }
+        boolean locked = false;
+        try {
+            FileChannel channel = openChannel(element);
+            try {
+                fileHolds.put(element, new FileHold(channel, channel.lock()));
+                locked = true;
+                LOG.trace("Locked file for: {}", element);
+            } finally {
+                if (!locked) {
+                    channel.close();
+                }
+            }
+        } catch (IOException | OverlappingFileLockException e) {
+            String msg = String.format("Locking file for '%s' failed: %s", element, e.getMessage());
+            LOG.error(msg, e);
+            throw new RuntimeException(msg, e);
+        } finally {
+            if (!locked) {
+                localLocker.unlock(element);
+            }
+        }
+    }
+
+    /**
+     * Unlocks the given element. (If it is not locked by the current thread, nothing happens. No exception is thrown in this case, just logging.)
+     */
+    @Override
+    public void unlock(T element) {
+        if (localLocker.getHoldCount(element) == 1L) {
+            FileHold fileHold = fileHolds.remove(element);
+            if (fileHold != null) {
+                try {
+                    fileHold.fileLock.release();
+                    fileHold.channel.close();
+                    LOG.trace("Unlocked file for: {}", element);
+                } catch (IOException e) {
+                    LOG.warn("Releasing file lock for '{}' failed: {}", element, e.getMessage());
+                }
+            }
+        }
+        localLocker.unlock(element);
+    }
+
+    /**
+     * Returns <code>true</code>, if the element is locked by another thread of this JVM or by another process.
+     * <p>
+     * (To check the latter, the lock file is locked and released at once, if it exists.)
+     */
+    @Override
+    public boolean isLocked(T element) {
+        if (localLocker.isLocked(element)) {
+            return true;
+        }
+        if (localLocker.isHeldByCurrentThread(element)) {
+            return false;
+        }
+        if (!localLocker.tryLock(element)) {
+            return true;
+        }
+        try {
+            Path lockFile = getLockFile(element);
+            if (!Files.exists(lockFile)) {
+                return false;
+            }
+            try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.WRITE)) {
+                FileLock fileLock = channel.tryLock();
+                if (fileLock == null) {
+                    return true;
+                }
+                fileLock.release();
+                return false;
+            } catch (OverlappingFileLockException e) {
+                return true;
+            }
+        } catch (IOException e) {
+            LOG.warn("Checking file lock for '{}' failed: {}", element, e.getMessage());
+            return false;
+        } finally {
+            localLocker.unlock(element);
+        }
+    }
+
+    /**
+     * Return <code>true</code>, if locked by current thread.
+     */
+    public boolean isHeldByCurrentThread(T element) {
+        return localLocker.isHeldByCurrentThread(element);
+    }
+
+}
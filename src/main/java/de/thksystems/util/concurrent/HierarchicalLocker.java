@@ -0,0 +1,536 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Locking util for hierarchical resources addressed by paths (like <code>tenant/order/line</code>): Locking a path excludes conflicting locks of its
+ * ancestors and descendants, too.
+ * <p>
+ * Like {@link ReadWriteLocker}, a path may be locked shared (for reading) or exclusively (for writing). Before a path is locked, all its ancestors are
+ * locked with an intention mode (intention shared or intention exclusive, top-down), so conflicts are detected on the way down. So locking costs O(depth)
+ * and is independent of the count of held locks.
+ * <p>
+ * All locks are reentrant. Two threads both holding a shared lock on a path and requesting an exclusive lock below it deadlock each other (like upgrading
+ * read locks), so this must be avoided.
+ */
+public final class HierarchicalLocker implements ReadWriteLockerI<String> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HierarchicalLocker.class);
+
+    /**
+     * Lock modes of a node.
+     */
+    private enum Mode {
+        INTENTION_SHARED, INTENTION_EXCLUSIVE, SHARED, EXCLUSIVE;
+
+        /**
+         * Compatibility matrix (by ordinal).
+         */
+        private static final boolean[][] COMPATIBLE = {
+                // IS, IX, S, X
+                { true, true, true, false }, // IS
+                { true, true, false, false }, // IX
+                { true, false, true, false }, // S
+                { false, false, false, false } // X
+        };
+
+        private boolean isCompatibleWith(Mode other) {
+            return COMPATIBLE[ordinal()][other.ordinal()];
+        }
+    }
+
+    private static final Mode[] MODES = Mode.values();
+
+    /**
+     * Lock state of a node (path). Accesses must be guarded by its mutex.
+     * <p>
+     * It exists only as long as a thread holds or waits for the node. After that, it is removed from the node table and must not be used anymore.
+     */
+    private final class NodeLock {
+
+        private final String path;
+
+        private final ReentrantLock mutex = new ReentrantLock();
+
+        /**
+         * Signalled, if a lock is released.
+         */
+        private final Condition released = mutex.newCondition();
+
+        /**
+         * Count of locks by mode (ordinal) by holding thread.
+         */
+        private final Map<Thread, long[]> holdCounts = new HashMap<>();
+
+        /**
+         * Count of locks by mode (ordinal) of all threads.
+         */
+        private final long[] totalCounts = new long[MODES.length];
+
+        private int waitingCount;
+
+        private boolean removed = false;
+
+        private NodeLock(String path) {
+            this.path = path;
+        }
+
+        /**
+         * Returns <code>true</code>, if the given mode is compatible with the modes held by other threads.
+         */
+        private boolean canGrant(Thread thread, Mode mode) {
+            long[] ownCounts = holdCounts.get(thread);
+            for (Mode heldMode : MODES) {
+                long otherCount = totalCounts[heldMode.ordinal()] - (ownCounts != null ? ownCounts[heldMode.ordinal()] : 0L);
+                if (otherCount > 0L && !mode.isCompatibleWith(heldMode)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void grant(Thread thread, Mode mode) {
+            holdCounts.computeIfAbsent(thread, t -> new long[MODES.length])[mode.ordinal()]++;
+            totalCounts[mode.ordinal()]++;
+        }
+
+        private boolean isHeldBy(Thread thread, Mode mode) {
+            long[] ownCounts = holdCounts.get(thread);
+            return ownCounts != null && ownCounts[mode.ordinal()] > 0L;
+        }
+
+        private boolean isHeldByOtherThread(Thread thread, Mode mode) {
+            return totalCounts[mode.ordinal()] > (isHeldBy(thread, mode) ? holdCounts.get(thread)[mode.ordinal()] : 0L);
+        }
+
+        private void release(Thread thread, Mode mode) {
+            long[] ownCounts = holdCounts.get(thread);
+            ownCounts[mode.ordinal()]--;
+            totalCounts[mode.ordinal()]--;
+            if (ownCounts[mode.ordinal()] > 0L) {
+                return;
+            }
+            // The mode is not held by the thread anymore, so waiters may be compatible now (even if the thread still holds other modes)
+            released.signalAll();
+            for (long count : ownCounts) {
+                if (count > 0L) {
+                    return;
+                }
+            }
+            holdCounts.remove(thread);
+        }
+
+        /**
+         * Removes this lock state from the node table, if no thread holds or waits for the node anymore.
+         */
+        private void removeIfUnused() {
+            if (holdCounts.isEmpty() && waitingCount == 0) {
+                LOG.trace("Removing node lock for path: {}", path);
+                removed = true;
+                nodeLocks.remove(path, this);
+            }
+        }
+    }
+
+    /**
+     * Lock states of the nodes.
+     */
+    private final ConcurrentMap<String, NodeLock> nodeLocks = new ConcurrentHashMap<>();
+
+    private final String separator;
+
+    /**
+     * Creates a hierarchical locker for paths separated by '/'.
+     */
+    public HierarchicalLocker() {
+        this("/");
+    }
+
+    /**
+     * Creates a hierarchical locker for paths separated by the given separator.
+     */
+    public HierarchicalLocker(String separator) {
+        this.separator = separator;
+    }
+
+    /**
+     * Returns the paths of the nodes from the root to the given path, e.g. <code>[a, a/b, a/b/c]</code> for <code>a/b/c</code>.
+     */
+    private List<String> getNodePaths(String path) {
+        if (path == null || path.isEmpty()) {
+            throw new IllegalArgumentException("The path must not be empty.");
+        }
+        List<String> nodePaths = new ArrayList<>();
+        int index = path.indexOf(separator);
+        while (index >= 0) {
+            if (index > 0) {
+                nodePaths.add(path.substring(0, index));
+            }
+            index = path.indexOf(separator, index + separator.length());
+        }
+        nodePaths.add(path);
+        return nodePaths;
+    }
+
+    /**
+     * Gets the lock state for the given node (and creates it, if needed). Its mutex is locked on return.
+     */
+    private NodeLock lockNodeLock(String nodePath) {
+        while (true) {
+            NodeLock nodeLock = nodeLocks.computeIfAbsent(nodePath, NodeLock::new);
+            nodeLock.mutex.lock();
+            // The lock state has been removed concurrently, so we need a new one
+            if (!nodeLock.removed) {
+                return nodeLock;
+            }
+            nodeLock.mutex.unlock();
+        }
+    }
+
+    /**
+     * Returns the count of nodes currently held or waited for (including the ancestors of locked paths).
+     */
+    public int getElementCount() {
+        return nodeLocks.size();
+    }
+
+    /**
+     * Tries to lock the given path exclusively (for writing). It will be locked, if neither the path nor one of its ancestors or descendants is locked by
+     * another thread.
+     *
+     * @return <code>true</code> in case of a succeeded lock, <code>false</code> otherwise
+     */
+    @Override
+    public boolean tryLock(String path) {
+        return tryLock(path, true);
+    }
+
+    /**
+     * Locks the given path exclusively (for writing) using an infinite waiting time.
+     */
+    @Override
+    public void lock(String path) {
+        lockWithoutTimeout(path, true);
+    }
+
+    /**
+     * Locks the given path exclusively (for writing) with a mandatory waiting time (for all nodes of the path) in the given {@link TimeUnit}.
+     */
+    public void lock(String path, long maxWaitTime, TimeUnit timeUnit) throws TimeoutException {
+        lock(path, true, Optional.of(timeUnit.toNanos(maxWaitTime)), false);
+    }
+
+    /**
+     * Tries to lock the given path shared (for reading). It will be locked, if neither the path nor one of its ancestors or descendants is locked
+     * exclusively by another thread.
+     *
+     * @return <code>true</code> in case of a succeeded lock, <code>false</code> otherwise
+     */
+    @Override
+    public boolean tryReadLock(String path) {
+        return tryLock(path, false);
+    }
+
+    /**
+     * Locks the given path shared (for reading) using an infinite waiting time.
+     */
+    @Override
+    public void readLock(String path) {
+        lockWithoutTimeout(path, false);
+    }
+
+    /**
+     * Locks the given path shared (for reading) with a mandatory waiting time (for all nodes of the path) in the given {@link TimeUnit}.
+     */
+    public void readLock(String path, long maxWaitTime, TimeUnit timeUnit) throws TimeoutException {
+        lock(path, false, Optional.of(timeUnit.toNanos(maxWaitTime)), false);
+    }
+
+    private boolean tryLock(String path, boolean exclusive) {
+        try {
+            return lock(path, exclusive, Optional.empty(), true);
+        } catch (TimeoutException e) {
+            // Must not happen here
+            String msg = "Unexpected timeout exception: " + e.getMessage();
+            LOG.error(msg, e);
+            throw new RuntimeException(msg, e);
+        }
+    }
+
+    private void lockWithoutTimeout(String path, boolean exclusive) {
+        try {
+            lock(path, exclusive, Optional.empty(), false);
+        } catch (TimeoutException e) {
+            // Must not happen here
+            String msg = "Unexpected timeout exception: " + e.getMessage();
+            LOG.error(msg, e);
+            throw new RuntimeException(msg, e);
+        }
+    }
+
+    /**
+     * Locks the ancestors of the given path with the intention mode and the path itself with the requested mode (top-down). If a node cannot be locked (in
+     * time), the already locked ones are released.
+     */
+    private boolean lock(String path, boolean exclusive, Optional<Long> optionalMaxWaitNanos, boolean tryLock) throws TimeoutException {
+        LOG.trace("Locking {}: {}", exclusive ? "exclusively" : "shared", path);
+        List<String> nodePaths = getNodePaths(path);
+        long deadline = System.nanoTime() + optionalMaxWaitNanos.orElse(0L);
+        int lockedCount = 0;
+        boolean locked = false;
+        try {
+            for (String nodePath : nodePaths) {
+                if (!lockNode(nodePath, getMode(nodePaths, lockedCount, exclusive), optionalMaxWaitNanos.map(maxWaitNanos -> deadline), tryLock)) {
+                    LOG.debug("Path '{}' is already locked at '{}'", path, nodePath);
+                    return false;
+                }
+                lockedCount++;
+            }
+            locked = true;
+            return true;
+        } finally {
+            if (!locked) {
+                releaseNodes(nodePaths, lockedCount, exclusive);
+            }
+        }
+    }
+
+    private static Mode getMode(List<String> nodePaths, int index, boolean exclusive) {
+        if (index == nodePaths.size() - 1) {
+            return exclusive ? Mode.EXCLUSIVE : Mode.SHARED;
+        }
+        return exclusive ? Mode.INTENTION_EXCLUSIVE : Mode.INTENTION_SHARED;
+    }
+
+    /**
+     * Locks a single node. Interruptions do not abort the waiting, but the interrupt status is restored afterwards.
+     */
+    private boolean lockNode(String nodePath, Mode mode, Optional<Long> optionalDeadline, boolean tryLock) throws TimeoutException {
+        NodeLock nodeLock = lockNodeLock(nodePath);
+        boolean interrupted = false;
+        try {
+            Thread currentThread = Thread.currentThread();
+            if (!nodeLock.canGrant(currentThread, mode)) {
+                if (tryLock) {
+                    return false;
+                }
+                LOG.debug("Waiting for {} lock of '{}'", mode, nodePath);
+                nodeLock.waitingCount++;
+                try {
+                    while (!nodeLock.canGrant(currentThread, mode)) {
+                        if (!optionalDeadline.isPresent()) {
+                            nodeLock.released.awaitUninterruptibly();
+                            continue;
+                        }
+                        long remainingNanos = optionalDeadline.get() - System.nanoTime();
+                        if (remainingNanos <= 0L) {
+                            String msg = String.format("Time exceeded for waiting on locked '%s'", nodePath);
+                            LOG.debug(msg);
+                            throw new TimeoutException(msg);
+                        }
+                        try {
+                            nodeLock.released.awaitNanos(remainingNanos);
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                } finally {
+                    nodeLock.waitingCount--;
+                }
+            }
+            nodeLock.grant(currentThread, mode);
+            return true;
+        } finally {
+            nodeLock.removeIfUnused();
+            nodeLock.mutex.unlock();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Releases the first given count of nodes (bottom-up).
+     */
+    private void releaseNodes(List<String> nodePaths, int count, boolean exclusive) {
+        Thread currentThread = Thread.currentThread();
+        for (int i = count - 1; i >= 0; i--) {
+            NodeLock nodeLock = nodeLocks.get(nodePaths.get(i));
+            nodeLock.mutex.lock();
+            try {
+                nodeLock.release(currentThread, getMode(nodePaths, i, exclusive));
+            } finally {
+                nodeLock.removeIfUnused();
+                nodeLock.mutex.unlock();
+            }
+        }
+    }
+
+    /**
+     * Unlocks the exclusive lock of the given path. (If it is not locked exclusively by the current thread, it will not be unlocked. No exception is thrown
+     * in this case, just logging.)
+     * <p>
+     * It is null-safe, because it may be used in finally blocks.
+     */
+    @Override
+    public void unlock(String path) {
+        unlock(path, true);
+    }
+
+    /**
+     * Unlocks the shared lock of the given path. (If it is not locked shared by the current thread, it will not be unlocked. No exception is thrown in this
+     * case, just logging.)
+     * <p>
+     * It is null-safe, because it may be used in finally blocks.
+     */
+    @Override
+    public void unlockRead(String path) {
+        unlock(path, false);
+    }
+
+    private void unlock(String path, boolean exclusive) {
+        if (path == null) {
+            return;
+        }
+        LOG.trace("Unlocking {}: {}", exclusive ? "exclusively" : "shared", path);
+        List<String> nodePaths = getNodePaths(path);
+        if (!isHeldByCurrentThread(path, exclusive ? Mode.EXCLUSIVE : Mode.SHARED)) {
+            LOG.info("The path '{}' is NOT locked {} by the current thread '{}' -> IGNORED!", path, exclusive ? "exclusively" : "shared",
+                    Thread.currentThread());
+            return;
+        }
+        releaseNodes(nodePaths, nodePaths.size(), exclusive);
+    }
+
+    private boolean isHeldByCurrentThread(String path, Mode mode) {
+        NodeLock nodeLock = nodeLocks.get(path);
+        if (nodeLock == null) {
+            return false;
+        }
+        nodeLock.mutex.lock();
+        try {
+            return nodeLock.isHeldBy(Thread.currentThread(), mode);
+        } finally {
+            nodeLock.mutex.unlock();
+        }
+    }
+
+    /**
+     * Returns <code>true</code>, if the path, one of its ancestors or one of its descendants is locked exclusively by another thread.
+     */
+    @Override
+    public boolean isLocked(String path) {
+        return isLockedByOtherThread(path, Mode.EXCLUSIVE, Mode.INTENTION_EXCLUSIVE);
+    }
+
+    /**
+     * Returns <code>true</code>, if the path, one of its ancestors or one of its descendants is locked shared by another thread.
+     */
+    @Override
+    public boolean isReadLocked(String path) {
+        return isLockedByOtherThread(path, Mode.SHARED, Mode.INTENTION_SHARED);
+    }
+
+    private boolean isLockedByOtherThread(String path, Mode mode, Mode intentionMode) {
+        Thread currentThread = Thread.currentThread();
+        for (String nodePath : getNodePaths(path)) {
+            NodeLock nodeLock = nodeLocks.get(nodePath);
+            if (nodeLock == null) {
+                return false; // Descendants of a node without lock state are not locked
+            }
+            nodeLock.mutex.lock();
+            try {
+                if (nodeLock.isHeldByOtherThread(currentThread, mode) || (nodePath.equals(path) && nodeLock.isHeldByOtherThread(currentThread, intentionMode))) {
+                    return true;
+                }
+            } finally {
+                nodeLock.mutex.unlock();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return <code>true</code>, if the path is locked exclusively by current thread.
+     */
+    public boolean isHeldByCurrentThread(String path) {
+        return isHeldByCurrentThread(path, Mode.EXCLUSIVE);
+    }
+
+    /**
+     * Return <code>true</code>, if the path is locked shared by current thread.
+     */
+    public boolean isReadHeldByCurrentThread(String path) {
+        return isHeldByCurrentThread(path, Mode.SHARED);
+    }
+
+    /**
+     * Locks path exclusively, then executes given {@link Runnable} and finally unlocks path. (Execute-around-method-pattern.)
+     */
+    public void executeWithLock(String path, Runnable task) {
+        lock(path);
+        try {
+            task.run();
+        } finally {
+            unlock(path);
+        }
+    }
+
+    /**
+     * Locks path exclusively, then executes given {@link Supplier}, returns its result and finally unlocks path. (Execute-around-method-pattern.)
+     */
+    public <S> S executeWithLock(String path, Supplier<S> supplier) {
+        lock(path);
+        try {
+            return supplier.get();
+        } finally {
+            unlock(path);
+        }
+    }
+
+    /**
+     * Locks path shared, then executes given {@link Runnable} and finally unlocks path. (Execute-around-method-pattern.)
+     */
+    public void executeWithReadLock(String path, Runnable task) {
+        readLock(path);
+        try {
+            task.run();
+        } finally {
+            unlockRead(path);
+        }
+    }
+
+    /**
+     * Locks path shared, then executes given {@link Supplier}, returns its result and finally unlocks path. (Execute-around-method-pattern.)
+     */
+    public <S> S executeWithReadLock(String path, Supplier<S> supplier) {
+        readLock(path);
+        try {
+            return supplier.get();
+        } finally {
+            unlockRead(path);
+        }
+    }
+
+}
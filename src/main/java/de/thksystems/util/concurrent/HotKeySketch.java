@@ -0,0 +1,79 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sketch of the most frequent keys using the space-saving algorithm: At most 'capacity' keys are counted. If a new key has to be counted, the key with the
+ * lowest count is replaced (and its count is inherited), so frequent keys are kept and their counts are overestimated at most by the inherited count.
+ */
+final class HotKeySketch<T> {
+
+    private final int capacity;
+
+    private final Map<T, long[]> counts = new HashMap<>();
+
+    private final ReentrantLock mutex = new ReentrantLock();
+
+    HotKeySketch(int capacity) {
+        this.capacity = capacity;
+    }
+
+    void record(T key) {
+        mutex.lock();
+        try {
+            long[] count = counts.get(key);
+            if (count != null) {
+                count[0]++;
+            } else if (counts.size() < capacity) {
+                counts.put(key, new long[] { 1L });
+            } else {
+                Entry<T, long[]> minEntry = null;
+                for (Entry<T, long[]> entry : counts.entrySet()) {
+                    if (minEntry == null || entry.getValue()[0] < minEntry.getValue()[0]) {
+                        minEntry = entry;
+                    }
+                }
+                long minCount = minEntry.getValue()[0];
+                counts.remove(minEntry.getKey());
+                counts.put(key, new long[] { minCount + 1L });
+            }
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    /**
+     * Returns the (at most) given count of keys with the highest counts (ordered by count descending).
+     */
+    Map<T, Long> getTop(int count) {
+        List<Entry<T, Long>> entries = new ArrayList<>();
+        mutex.lock();
+        try {
+            counts.forEach((key, value) -> entries.add(new AbstractMap.SimpleImmutableEntry<>(key, value[0])));
+        } finally {
+            mutex.unlock();
+        }
+        entries.sort(Collections.reverseOrder(Entry.comparingByValue()));
+        Map<T, Long> top = new LinkedHashMap<>();
+        for (Entry<T, Long> entry : entries.subList(0, Math.min(count, entries.size()))) {
+            top.put(entry.getKey(), entry.getValue());
+        }
+        return top;
+    }
+
+}
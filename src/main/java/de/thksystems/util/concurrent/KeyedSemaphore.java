@@ -0,0 +1,467 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Semaphores by element: At most the given count of permits of an element may be acquired at once (like {@link Locker}, but with more than one holder).
+ * <p>
+ * Permits are not bound to threads, so they may be released by any thread. (And they are not reentrant.)
+ * <p>
+ * If fair, permits are granted in FIFO order: A released permit is handed over to the first waiting thread directly and new threads do not overtake waiting
+ * ones. Otherwise (barging), a new thread gets a free permit, even if other threads are waiting (more throughput, but waiting threads may starve).
+ * <p>
+ * The state of an element exists only as long as permits are acquired or waited for.
+ */
+public final class KeyedSemaphore<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KeyedSemaphore.class);
+
+    private static final int HOT_ELEMENTS_CAPACITY = 64;
+
+    private static final int HOT_ELEMENTS_COUNT = 10;
+
+    /**
+     * A thread waiting for a permit.
+     */
+    private static final class Waiter {
+
+        private final Thread thread = Thread.currentThread();
+
+        private final long requestTime;
+
+        /**
+         * Set, if a permit is handed over to the waiter (fair mode only).
+         */
+        private volatile boolean granted = false;
+
+        private Waiter(long requestTime) {
+            this.requestTime = requestTime;
+        }
+    }
+
+    /**
+     * Permit state of an element. Accesses must be guarded by its mutex.
+     * <p>
+     * It exists only as long as permits are acquired or waited for. After that, it is removed from the element table and must not be used anymore.
+     */
+    private final class ElementState {
+
+        private final T element;
+
+        private final int permits;
+
+        private final ReentrantLock mutex = new ReentrantLock();
+
+        private final Queue<Waiter> waiters = new LinkedList<>();
+
+        private int acquiredPermits = 0;
+
+        private boolean removed = false;
+
+        private ElementState(T element) {
+            this.element = element;
+            this.permits = permitsFunction.apply(element);
+        }
+
+        private boolean hasFreePermit() {
+            return acquiredPermits < permits;
+        }
+
+        /**
+         * Removes this state from the element table, if no permits are acquired or waited for anymore.
+         */
+        private void removeIfUnused() {
+            if (acquiredPermits == 0 && waiters.isEmpty()) {
+                LOG.trace("Removing semaphore state for element: {}", element);
+                removed = true;
+                elementStates.remove(element, this);
+            }
+        }
+    }
+
+    /**
+     * Collected metrics (see {@link #withMetrics()}).
+     */
+    private final class Statistics {
+
+        private final LongAdder acquireCount = new LongAdder();
+
+        private final LongAdder contentionCount = new LongAdder();
+
+        private final LongAdder timeoutCount = new LongAdder();
+
+        private final LatencyHistogram waitTime = new LatencyHistogram();
+
+        private final HotKeySketch<T> hotElements = new HotKeySketch<>(HOT_ELEMENTS_CAPACITY);
+    }
+
+    /**
+     * Permit states of the elements.
+     */
+    private final ConcurrentMap<T, ElementState> elementStates = new ConcurrentHashMap<>();
+
+    private final Function<T, Integer> permitsFunction;
+
+    private final boolean fair;
+
+    private volatile Statistics statistics;
+
+    /**
+     * Creates a fair semaphore with the given count of permits for each element.
+     */
+    public KeyedSemaphore(int permits) {
+        this(element -> permits, true);
+    }
+
+    /**
+     * Creates a semaphore with the count of permits for each element given by the function (called once per element, as long as its state exists).
+     */
+    public KeyedSemaphore(Function<T, Integer> permitsFunction, boolean fair) {
+        this.permitsFunction = permitsFunction;
+        this.fair = fair;
+    }
+
+    /**
+     * Enables the collection of metrics (see {@link #getMetrics()}). The overhead is low, but not zero, so it is disabled by default.
+     */
+    public KeyedSemaphore<T> withMetrics() {
+        if (statistics == null) {
+            statistics = new Statistics();
+        }
+        return this;
+    }
+
+    /**
+     * Gets the state for the given element (and creates it, if needed). Its mutex is locked on return.
+     */
+    private ElementState lockElementState(T element) {
+        while (true) {
+            ElementState elementState = elementStates.computeIfAbsent(element, ElementState::new);
+            elementState.mutex.lock();
+            // The state has been removed concurrently, so we need a new one
+            if (!elementState.removed) {
+                return elementState;
+            }
+            elementState.mutex.unlock();
+        }
+    }
+
+    /**
+     * Returns the count of elements with acquired or waited for permits.
+     */
+    public int getElementCount() {
+        return elementStates.size();
+    }
+
+    /**
+     * Tries to acquire a permit of the given element.
+     *
+     * @return <code>true</code>, if a permit is acquired, <code>false</code> otherwise
+     */
+    public boolean tryAcquire(T element) {
+        try {
+            return acquire(element, Optional.empty(), true);
+        } catch (TimeoutException e) {
+            // Must not happen here
+            String msg = "Unexpected timeout exception: " + e.getMessage();
+            LOG.error(msg, e);
+            throw new RuntimeException(msg, e);
+        }
+    }
+
+    /**
+     * Acquires a permit of the given element using an infinite waiting time.
+     */
+    public void acquire(T element) {
+        try {
+            acquire(element, Optional.empty(), false);
+        } catch (TimeoutException e) {
+            // Must not happen here
+            String msg = "Unexpected timeout exception: " + e.getMessage();
+            LOG.error(msg, e);
+            throw new RuntimeException(msg, e);
+        }
+    }
+
+    /**
+     * Acquires a permit of the given element with a mandatory waiting time in the given {@link TimeUnit}.
+     */
+    public void acquire(T element, long maxWaitTime, TimeUnit timeUnit) throws TimeoutException {
+        acquire(element, Optional.of(timeUnit.toNanos(maxWaitTime)), false);
+    }
+
+    /**
+     * Acquires a permit of the given element. If there is none, the current thread is parked until a permit is released.<br>
+     * If the waiting time (in nanoseconds) exceeds the given one, an {@link TimeoutException} is thrown.<br>
+     * Interruptions do not abort the waiting, but the interrupt status is restored afterwards.
+     */
+    private boolean acquire(T element, Optional<Long> optionalMaxWaitNanos, boolean tryAcquire) throws TimeoutException {
+        LOG.trace("Acquiring: {}", element);
+        Statistics currentStatistics = statistics;
+        Waiter waiter;
+        ElementState elementState = lockElementState(element);
+        try {
+            if (elementState.hasFreePermit() && (!fair || elementState.waiters.isEmpty())) {
+                elementState.acquiredPermits++;
+                if (currentStatistics != null) {
+                    currentStatistics.acquireCount.increment();
+                    currentStatistics.waitTime.record(0L);
+                }
+                return true;
+            }
+            if (tryAcquire) {
+                LOG.debug("No permit of '{}' available", element);
+                elementState.removeIfUnused();
+                return false;
+            }
+            waiter = new Waiter(currentStatistics != null ? System.nanoTime() : 0L);
+            elementState.waiters.add(waiter);
+            if (currentStatistics != null) {
+                currentStatistics.contentionCount.increment();
+                currentStatistics.hotElements.record(element);
+            }
+        } finally {
+            elementState.mutex.unlock();
+        }
+
+        LOG.debug("Waiting for permit of '{}'", element);
+        if (!awaitPermit(elementState, waiter, optionalMaxWaitNanos)) {
+            String msg = String.format("Time (%d ns) exceeded for waiting on permit of '%s'", optionalMaxWaitNanos.orElse(0L), element);
+            LOG.debug(msg);
+            if (currentStatistics != null) {
+                currentStatistics.timeoutCount.increment();
+            }
+            throw new TimeoutException(msg);
+        }
+        if (currentStatistics != null) {
+            currentStatistics.acquireCount.increment();
+            currentStatistics.waitTime.record(System.nanoTime() - waiter.requestTime);
+        }
+        return true;
+    }
+
+    /**
+     * Parks the current thread until it got a permit or the waiting time is exceeded (then, it is removed from the waiters).
+     */
+    private boolean awaitPermit(ElementState elementState, Waiter waiter, Optional<Long> optionalMaxWaitNanos) {
+        boolean interrupted = false;
+        long deadline = System.nanoTime() + optionalMaxWaitNanos.orElse(0L);
+        try {
+            while (!waiter.granted) {
+                if (!fair && tryTakeFreePermit(elementState, waiter)) {
+                    return true;
+                }
+                if (optionalMaxWaitNanos.isPresent()) {
+                    long remainingNanos = deadline - System.nanoTime();
+                    if (remainingNanos <= 0L) {
+                        return !cancelWaiting(elementState, waiter);
+                    }
+                    LockSupport.parkNanos(this, remainingNanos);
+                } else {
+                    LockSupport.park(this);
+                }
+                interrupted |= Thread.interrupted();
+            }
+            return true;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Takes a free permit for the given (barging) waiter, if there is one.
+     */
+    private boolean tryTakeFreePermit(ElementState elementState, Waiter waiter) {
+        Waiter nextWaiter = null;
+        elementState.mutex.lock();
+        try {
+            if (!elementState.hasFreePermit()) {
+                return false;
+            }
+            elementState.acquiredPermits++;
+            elementState.waiters.remove(waiter);
+            if (elementState.hasFreePermit()) {
+                nextWaiter = elementState.waiters.peek(); // We may have swallowed its wake-up (several releases unparked us)
+            }
+        } finally {
+            elementState.mutex.unlock();
+        }
+        if (nextWaiter != null) {
+            LockSupport.unpark(nextWaiter.thread);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the given waiter, if it did not get a permit meanwhile.
+     *
+     * @return <code>true</code>, if removed, <code>false</code>, if a permit was handed over to the waiter before
+     */
+    private boolean cancelWaiting(ElementState elementState, Waiter waiter) {
+        Waiter nextWaiter = null;
+        elementState.mutex.lock();
+        try {
+            if (waiter.granted) {
+                return false;
+            }
+            elementState.waiters.remove(waiter);
+            if (!fair && elementState.hasFreePermit()) {
+                nextWaiter = elementState.waiters.peek(); // We may have swallowed its wake-up
+            }
+            elementState.removeIfUnused();
+        } finally {
+            elementState.mutex.unlock();
+        }
+        if (nextWaiter != null) {
+            LockSupport.unpark(nextWaiter.thread);
+        }
+        return true;
+    }
+
+    /**
+     * Releases a permit of the given element. (If no permit of it is acquired, nothing happens. No exception is thrown in this case, just logging.)
+     * <p>
+     * It is null-safe, because it may be used in finally blocks.
+     */
+    public void release(T element) {
+        if (element == null) {
+            return;
+        }
+        LOG.trace("Releasing: {}", element);
+        ElementState elementState = elementStates.get(element);
+        if (elementState == null) {
+            LOG.info("No permit of element '{}' is acquired -> IGNORED!", element);
+            return;
+        }
+        Waiter nextWaiter;
+        elementState.mutex.lock();
+        try {
+            if (elementState.acquiredPermits == 0) {
+                LOG.info("No permit of element '{}' is acquired -> IGNORED!", element);
+                return;
+            }
+            if (fair) {
+                nextWaiter = elementState.waiters.poll();
+                if (nextWaiter != null) {
+                    nextWaiter.granted = true; // Hand over the permit
+                } else {
+                    elementState.acquiredPermits--;
+                }
+            } else {
+                elementState.acquiredPermits--;
+                nextWaiter = elementState.waiters.peek();
+            }
+            elementState.removeIfUnused();
+        } finally {
+            elementState.mutex.unlock();
+        }
+        if (nextWaiter != null) {
+            LockSupport.unpark(nextWaiter.thread);
+        }
+    }
+
+    /**
+     * Returns the count of available permits of the given element.
+     */
+    public int getAvailablePermits(T element) {
+        ElementState elementState = elementStates.get(element);
+        if (elementState == null) {
+            return permitsFunction.apply(element);
+        }
+        elementState.mutex.lock();
+        try {
+            return elementState.permits - elementState.acquiredPermits;
+        } finally {
+            elementState.mutex.unlock();
+        }
+    }
+
+    /**
+     * Returns the count of threads waiting for a permit of the given element.
+     */
+    public int getWaitingCount(T element) {
+        ElementState elementState = elementStates.get(element);
+        if (elementState == null) {
+            return 0;
+        }
+        elementState.mutex.lock();
+        try {
+            return elementState.waiters.size();
+        } finally {
+            elementState.mutex.unlock();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the metrics. The lock count is the count of acquired permits. (Hold times and leases are not recorded.)
+     *
+     * @throws IllegalStateException if metrics are not enabled (see {@link #withMetrics()})
+     */
+    public LockerMetrics<T> getMetrics() {
+        Statistics currentStatistics = statistics;
+        if (currentStatistics == null) {
+            throw new IllegalStateException("Metrics are not enabled.");
+        }
+        Map<T, Integer> waitingCounts = new HashMap<>();
+        for (ElementState elementState : elementStates.values()) {
+            int waitingCount = getWaitingCount(elementState.element);
+            if (waitingCount > 0) {
+                waitingCounts.put(elementState.element, waitingCount);
+            }
+        }
+        return new LockerMetrics<>(getElementCount(), currentStatistics.acquireCount.sum(), currentStatistics.contentionCount.sum(),
+                currentStatistics.timeoutCount.sum(), 0L, currentStatistics.waitTime.snapshot(), new LatencyHistogram().snapshot(),
+                currentStatistics.hotElements.getTop(HOT_ELEMENTS_COUNT), waitingCounts);
+    }
+
+    /**
+     * Acquires a permit of the element, then executes given {@link Runnable} and finally releases the permit. (Execute-around-method-pattern.)
+     */
+    public void executeWithPermit(T element, Runnable task) {
+        acquire(element);
+        try {
+            task.run();
+        } finally {
+            release(element);
+        }
+    }
+
+    /**
+     * Acquires a permit of the element, then executes given {@link Supplier}, returns its result and finally releases the permit.
+     * (Execute-around-method-pattern.)
+     */
+    public <S> S executeWithPermit(T element, Supplier<S> supplier) {
+        acquire(element);
+        try {
+            return supplier.get();
+        } finally {
+            release(element);
+        }
+    }
+
+}
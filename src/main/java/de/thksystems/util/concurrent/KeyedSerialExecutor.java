@@ -0,0 +1,147 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent;
+
+import static de.thksystems.util.lang.ExceptionUtils.asShortString;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Executes tasks serially per element: Tasks of the same element are executed strictly in submission order (one after the other), tasks of distinct
+ * elements in parallel by the given (shared) executor.
+ * <p>
+ * It is a non-blocking replacement of {@link Locker#executeWithLock(Object, Runnable)}, if the lock is only used to serialize work per element: No thread
+ * waits for an element, the next task is just submitted to the executor after the previous one is finished.
+ * <p>
+ * The queue of an element exists only as long as tasks of it are pending.
+ */
+public final class KeyedSerialExecutor<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(KeyedSerialExecutor.class);
+
+    /**
+     * Queue of an element: The completion of its last submitted task and the count of pending tasks. Only changed atomically by the element table.
+     */
+    private static final class TaskQueue {
+
+        private CompletableFuture<Void> tail = CompletableFuture.completedFuture(null);
+
+        private volatile int pendingCount = 0;
+    }
+
+    private final Executor executor;
+
+    /**
+     * Queues of the elements with pending tasks.
+     */
+    private final ConcurrentMap<T, TaskQueue> taskQueues = new ConcurrentHashMap<>();
+
+    public KeyedSerialExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Submits the given task for the given element. It is executed after all previously submitted tasks of the element are finished.
+     *
+     * @return the future completed after the execution of the task (or exceptionally, if the task fails). If it is cancelled before the task is started,
+     * the task is skipped.
+     */
+    public CompletableFuture<Void> execute(T element, Runnable task) {
+        return submit(element, () -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Submits the given task for the given element. It is executed after all previously submitted tasks of the element are finished.
+     *
+     * @return the future completed with the result of the task (or exceptionally, if the task fails). If it is cancelled before the task is started, the
+     * task is skipped.
+     */
+    @SuppressWarnings("unchecked")
+    public <S> CompletableFuture<S> submit(T element, Supplier<S> supplier) {
+        CompletableFuture<S> result = new CompletableFuture<>();
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        CompletableFuture<Void>[] previous = new CompletableFuture[1];
+        taskQueues.compute(element, (key, taskQueue) -> {
+            TaskQueue currentTaskQueue = taskQueue != null ? taskQueue : new TaskQueue();
+            currentTaskQueue.pendingCount++;
+            previous[0] = currentTaskQueue.tail;
+            currentTaskQueue.tail = done;
+            return currentTaskQueue;
+        });
+        LOG.trace("Submitted task for: {}", element);
+        previous[0].whenComplete((ignored, throwable) -> {
+            try {
+                executor.execute(() -> run(element, supplier, result, done));
+            } catch (RejectedExecutionException e) {
+                LOG.warn("Execution of task for '{}' rejected: {}", element, asShortString(e));
+                result.completeExceptionally(e);
+                finish(element, done);
+            }
+        });
+        return result;
+    }
+
+    private <S> void run(T element, Supplier<S> supplier, CompletableFuture<S> result, CompletableFuture<Void> done) {
+        try {
+            if (!result.isDone()) {
+                result.complete(supplier.get());
+            }
+        } catch (Throwable throwable) {
+            LOG.debug("Task for '{}' failed: {}", element, asShortString(throwable));
+            result.completeExceptionally(throwable);
+        } finally {
+            finish(element, done);
+        }
+    }
+
+    /**
+     * Removes the finished task from the queue of the element (and the queue, if it is empty) and starts the next one.
+     */
+    private void finish(T element, CompletableFuture<Void> done) {
+        taskQueues.computeIfPresent(element, (key, taskQueue) -> --taskQueue.pendingCount == 0 ? null : taskQueue);
+        done.complete(null);
+    }
+
+    /**
+     * Returns the count of pending (waiting or running) tasks of the given element.
+     */
+    public int getQueueDepth(T element) {
+        TaskQueue taskQueue = taskQueues.get(element);
+        return taskQueue != null ? taskQueue.pendingCount : 0;
+    }
+
+    /**
+     * Returns the count of pending (waiting or running) tasks by element (only elements with pending tasks).
+     */
+    public Map<T, Integer> getQueueDepths() {
+        Map<T, Integer> queueDepths = new HashMap<>();
+        taskQueues.forEach((element, taskQueue) -> queueDepths.put(element, taskQueue.pendingCount));
+        return queueDepths;
+    }
+
+    /**
+     * Returns the count of elements with pending tasks.
+     */
+    public int getElementCount() {
+        return taskQueues.size();
+    }
+
+}
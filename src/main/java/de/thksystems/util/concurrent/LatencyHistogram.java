@@ -0,0 +1,124 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of durations (in nanoseconds) with logarithmic (power of two) buckets. Recording is cheap (some {@link LongAdder} increments), so it
+ * can be used on hot paths.
+ * <p>
+ * Percentiles are estimated by the upper bound of their bucket, so they are up to twice the real value.
+ */
+public final class LatencyHistogram {
+
+    private static final int BUCKET_COUNT = 64;
+
+    /**
+     * Bucket 0 counts the value 0, bucket i counts values in [2^(i-1), 2^i).
+     */
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+
+    private final LongAdder sum = new LongAdder();
+
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0L);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * Records the given duration in nanoseconds. (Negative values are recorded as 0.)
+     */
+    public void record(long nanos) {
+        long value = Math.max(0L, nanos);
+        buckets[BUCKET_COUNT - Long.numberOfLeadingZeros(value)].increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Returns a snapshot of the histogram. (It is not atomic regarding concurrent recordings.)
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return new Snapshot(counts, sum.sum(), max.get());
+    }
+
+    /**
+     * An immutable snapshot of a {@link LatencyHistogram}. All values are in nanoseconds.
+     */
+    public static final class Snapshot {
+
+        private final long[] counts;
+
+        private final long count;
+
+        private final long sum;
+
+        private final long max;
+
+        private Snapshot(long[] counts, long sum, long max) {
+            this.counts = counts;
+            long totalCount = 0L;
+            for (long bucketCount : counts) {
+                totalCount += bucketCount;
+            }
+            this.count = totalCount;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getSum() {
+            return sum;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0L ? 0.0 : (double) sum / count;
+        }
+
+        /**
+         * Returns the (estimated) percentile, e.g. 0.99 for the 99th percentile.
+         */
+        public long getPercentile(double percentile) {
+            if (count == 0L) {
+                return 0L;
+            }
+            long rank = (long) Math.ceil(percentile * count);
+            long cumulatedCount = 0L;
+            for (int i = 0; i < counts.length; i++) {
+                cumulatedCount += counts[i];
+                if (cumulatedCount >= rank) {
+                    long upperBound = i == 0 ? 0L : (i == BUCKET_COUNT - 1 ? Long.MAX_VALUE : (1L << i) - 1L);
+                    return Math.min(upperBound, max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d, mean=%.0fns, p50=%dns, p99=%dns, max=%dns", count, getMean(), getPercentile(0.5), getPercentile(0.99), max);
+        }
+    }
+
+}
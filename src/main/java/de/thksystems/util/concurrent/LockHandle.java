@@ -0,0 +1,34 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent;
+
+/**
+ * Handle of a lock on an element (see {@link Locker#lockWithHandle(Object)} and {@link Locker#lockAsync(Object)}). Closing it unlocks the element, so it can
+ * be used with try-with-resources.
+ */
+public interface LockHandle<T> extends AutoCloseable {
+
+    /**
+     * Returns the locked element.
+     */
+    T getElement();
+
+    /**
+     * Unlocks the element. (If the lock of this handle is already released, nothing happens. No exception is thrown in this case, just logging.)
+     */
+    void unlock();
+
+    /**
+     * Unlocks the element (see {@link #unlock()}).
+     */
+    @Override
+    default void close() {
+        unlock();
+    }
+
+}
@@ -6,49 +6,590 @@
  */
 package de.thksystems.util.concurrent;
 
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
 import java.util.function.Supplier;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.thksystems.util.function.CheckedSupplier;
+import de.thksystems.util.lang.Deferred;
 
 /**
  * Locking util.
+ * <p>
+ * Elements are identified by {@link Object#equals(Object)} and {@link Object#hashCode()}, so equal elements share the same lock (independent of their
+ * instance).
  */
 public final class Locker<T> implements LockerI<T> {
 
     private static final Logger LOG = LoggerFactory.getLogger(Locker.class);
 
+    private static final int HOT_ELEMENTS_CAPACITY = 64;
+
+    private static final int HOT_ELEMENTS_COUNT = 10;
+
+    private static final String MBEAN_DOMAIN = "de.thksystems.util.concurrent";
+
+    /**
+     * Scheduler for timeouts of asynchronous lock requests (shared by all lockers).
+     */
+    private static final Deferred<ScheduledExecutorService> TIMEOUT_SCHEDULER = new Deferred<>(() -> {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, new BasicThreadFactory.Builder()
+                .namingPattern("locker-timeout-%d")
+                .daemon(true)
+                .build());
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    });
+
+    /**
+     * Watchdog for leases of locks (shared by all lockers).
+     */
+    private static final Deferred<TimerWheel> LEASE_WATCHDOG = new Deferred<>(() -> new TimerWheel("locker-lease-watchdog", 10L, TimeUnit.MILLISECONDS, 512));
+
+    /**
+     * Policy for granting the lock of an element, if it is unlocked while other threads are waiting for it.
+     */
+    public enum Fairness {
+
+        /**
+         * The lock is handed over to the first waiting thread (or asynchronous lock request) directly. New threads do not overtake waiting ones, so the
+         * waiting times are predictable.
+         */
+        FIFO,
+
+        /**
+         * The lock is released and the first waiting thread is woken up. Until it runs, any (running) thread may take the lock, including the releasing one
+         * (more throughput, but higher tail latencies). Asynchronous lock requests are still granted in FIFO order.
+         */
+        BARGING
+    }
+
+    /**
+     * Lock state of an element. Accesses to its thread queue and lock count must be guarded by its mutex.
+     * <p>
+     * There are no monitors (<code>synchronized</code>) used for guarding, so waiting (virtual) threads do not pin their carrier threads.
+     * <p>
+     * It exists only as long as a thread holds or waits for the element. After that, it is removed from the element table and must not be used anymore.
+     */
+    private final class ElementLock {
+
+        private final T element;
+
+        private final ReentrantLock mutex = new ReentrantLock();
+
+        /**
+         * Queue of waiters (threads or asynchronous lock requests) for element. The first entry is the current locking one (if the element is locked; with
+         * barging, it may be unlocked while threads are waiting).
+         */
+        private final Deque<Waiter> threadQueue = new LinkedList<>();
+
+        /**
+         * Count of locks by current locking thread.
+         */
+        private long lockCount = 1L;
+
+        /**
+         * The current locking waiter (the first entry of the thread queue or <code>null</code>). Published for reading without synchronization.
+         */
+        private volatile Waiter lockingWaiter;
+
+        /**
+         * Set, if this lock state is removed from the element table.
+         */
+        private boolean removed = false;
+
+        private ElementLock(T element) {
+            this.element = element;
+        }
+
+        /**
+         * The lease of the current locking waiter (if leases are enabled).
+         */
+        private TimerWheel.Timeout lease;
+
+        /**
+         * Time (see {@link System#nanoTime()}) the current locking waiter got the lock (if metrics are enabled).
+         */
+        private long lockedSince;
+
+        /**
+         * Must be called after the head of the thread queue is changed.
+         */
+        private void updateLockingWaiter() {
+            setLockingWaiter(threadQueue.peek());
+        }
+
+        private void setLockingWaiter(Waiter newLockingWaiter) {
+            Waiter previousLockingWaiter = lockingWaiter;
+            lockingWaiter = newLockingWaiter;
+            if (lockingWaiter != previousLockingWaiter) {
+                Statistics currentStatistics = statistics;
+                if (currentStatistics != null) {
+                    recordLockingWaiterChange(currentStatistics, previousLockingWaiter);
+                }
+                startLease();
+            }
+        }
+
+        private void recordLockingWaiterChange(Statistics currentStatistics, Waiter previousLockingWaiter) {
+            long now = System.nanoTime();
+            if (previousLockingWaiter != null && lockedSince != 0L) {
+                currentStatistics.holdTime.record(now - lockedSince);
+            }
+            lockedSince = 0L;
+            if (lockingWaiter != null) {
+                currentStatistics.lockCount.increment();
+                if (lockingWaiter.requestTime != 0L) {
+                    currentStatistics.waitTime.record(now - lockingWaiter.requestTime);
+                }
+                lockedSince = now;
+            }
+        }
+
+        private int getWaitingCount() {
+            mutex.lock();
+            try {
+                return threadQueue.size() - (lockingWaiter != null ? 1 : 0);
+            } finally {
+                mutex.unlock();
+            }
+        }
+
+        /**
+         * Starts the lease of the current locking waiter (and cancels the lease of the previous one).
+         */
+        private void startLease() {
+            if (lease != null) {
+                lease.cancel();
+                lease = null;
+            }
+            Waiter leasingWaiter = lockingWaiter;
+            if (leasingWaiter != null && leaseNanos > 0L) {
+                lease = LEASE_WATCHDOG.get().schedule(() -> revokeLease(leasingWaiter), leaseNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private Thread getLockingThread() {
+            Waiter waiter = lockingWaiter;
+            return waiter != null ? waiter.thread : null;
+        }
+
+        /**
+         * Removes this lock state from the element table, if no thread holds or waits for the element anymore.
+         */
+        private void removeIfUnused() {
+            if (threadQueue.isEmpty()) {
+                LOG.trace("Removing element lock for element: {}", element);
+                removed = true;
+                elementLocks.remove(element, this);
+            }
+        }
+    }
+
+    /**
+     * An entry of the thread queue of an element: Either a waiting thread or an asynchronous lock request (then it is the {@link LockHandle} of the request,
+     * too).
+     */
+    private final class Waiter implements LockHandle<T> {
+
+        private final ElementLock elementLock;
+
+        /**
+         * The waiting thread (<code>null</code> for asynchronous lock requests).
+         */
+        private final Thread thread;
+
+        /**
+         * The future of an asynchronous lock request (<code>null</code> for waiting threads).
+         */
+        private final CompletableFuture<LockHandle<T>> future;
+
+        /**
+         * Executor used to complete the future (optional).
+         */
+        private final Executor executor;
+
+        /**
+         * Time (see {@link System#nanoTime()}) of the lock request (if metrics are enabled).
+         */
+        private final long requestTime;
+
+        private Waiter(ElementLock elementLock, Thread thread) {
+            this(elementLock, thread, null, null);
+        }
+
+        private Waiter(ElementLock elementLock, Thread thread, CompletableFuture<LockHandle<T>> future, Executor executor) {
+            this.elementLock = elementLock;
+            this.thread = thread;
+            this.future = future;
+            this.executor = executor;
+            this.requestTime = statistics != null ? System.nanoTime() : 0L;
+        }
+
+        @Override
+        public T getElement() {
+            return elementLock.element;
+        }
+
+        @Override
+        public void unlock() {
+            if (thread != null && thread != Thread.currentThread()) {
+                LOG.info("The element '{}' is NOT locked by the current thread '{}'. It is locked by '{}' -> IGNORED!", elementLock.element,
+                        Thread.currentThread(), thread);
+                return;
+            }
+            release(this);
+        }
+
+        @Override
+        public String toString() {
+            return thread != null ? thread.toString() : "LockHandle[" + elementLock.element + "]";
+        }
+    }
+
+    /**
+     * Collected metrics (see {@link #withMetrics()}).
+     */
+    private final class Statistics {
+
+        private final LongAdder lockCount = new LongAdder();
+
+        private final LongAdder contentionCount = new LongAdder();
+
+        private final LongAdder timeoutCount = new LongAdder();
+
+        private final LongAdder revokedLeaseCount = new LongAdder();
+
+        private final LatencyHistogram waitTime = new LatencyHistogram();
+
+        private final LatencyHistogram holdTime = new LatencyHistogram();
+
+        private final HotKeySketch<T> hotElements = new HotKeySketch<>(HOT_ELEMENTS_CAPACITY);
+    }
+
+    /**
+     * Rank of an element with equal hash codes (see {@link #tieRanks}). The use count is guarded by {@link ConcurrentMap#compute}.
+     */
+    private static final class TieRank {
+
+        private final long rank;
+
+        private int useCount;
+
+        TieRank(long rank) {
+            this.rank = rank;
+        }
+    }
+
+    /**
+     * JMX view of the metrics.
+     */
+    private final class LockerMXBeanImpl implements LockerMXBean {
+
+        @Override
+        public int getElementCount() {
+            return Locker.this.getElementCount();
+        }
+
+        @Override
+        public long getLockCount() {
+            return statistics.lockCount.sum();
+        }
+
+        @Override
+        public long getContentionCount() {
+            return statistics.contentionCount.sum();
+        }
+
+        @Override
+        public long getTimeoutCount() {
+            return statistics.timeoutCount.sum();
+        }
+
+        @Override
+        public long getRevokedLeaseCount() {
+            return statistics.revokedLeaseCount.sum();
+        }
+
+        @Override
+        public double getWaitTimeMean() {
+            return statistics.waitTime.snapshot().getMean();
+        }
+
+        @Override
+        public long getWaitTime99thPercentile() {
+            return statistics.waitTime.snapshot().getPercentile(0.99);
+        }
+
+        @Override
+        public long getWaitTimeMax() {
+            return statistics.waitTime.snapshot().getMax();
+        }
+
+        @Override
+        public double getHoldTimeMean() {
+            return statistics.holdTime.snapshot().getMean();
+        }
+
+        @Override
+        public long getHoldTime99thPercentile() {
+            return statistics.holdTime.snapshot().getPercentile(0.99);
+        }
+
+        @Override
+        public long getHoldTimeMax() {
+            return statistics.holdTime.snapshot().getMax();
+        }
+
+        @Override
+        public Map<String, Long> getHotElements() {
+            Map<String, Long> hotElements = new LinkedHashMap<>();
+            statistics.hotElements.getTop(HOT_ELEMENTS_COUNT).forEach((element, count) -> hotElements.put(String.valueOf(element), count));
+            return hotElements;
+        }
+
+        @Override
+        public Map<String, Integer> getWaitingCounts() {
+            Map<String, Integer> waitingCounts = new LinkedHashMap<>();
+            Locker.this.getWaitingCounts().forEach((element, count) -> waitingCounts.put(String.valueOf(element), count));
+            return waitingCounts;
+        }
+    }
+
+    /**
+     * Lock states of the elements.
+     */
+    private final ConcurrentMap<T, ElementLock> elementLocks = new ConcurrentHashMap<>();
+
+    /**
+     * Ranks of elements with equal hash codes, that are currently locked by {@link #lockAll(Collection, long, TimeUnit)}. The rank is the tiebreaker of the
+     * lock order. It is kept as long as any call of lockAll uses the element, so all concurrent calls use the same rank.
+     */
+    private final ConcurrentMap<T, TieRank> tieRanks = new ConcurrentHashMap<>();
+
+    private final AtomicLong tieRankSequence = new AtomicLong();
+
     /**
-     * Queue of threads for element. The first entry is the current locking one. Accesses to this map must be synchronized.
+     * Maximum hold duration of a lock (in nanoseconds). <code>0</code>, if leases are disabled.
      */
-    private final Map<T, Queue<Thread>> threadQueueMap = new HashMap<>();
+    private volatile long leaseNanos = 0L;
+
+    private volatile BiConsumer<T, Thread> leaseRevokedListener = Consumers.noBiOp();
+
+    private volatile Statistics statistics;
+
+    private volatile boolean deadlockDetection = false;
+
+    private volatile Fairness fairness = Fairness.FIFO;
 
     /**
-     * Count of locks by current locking thread.
+     * Wait-for graph: The element lock each (blocked) thread waits for. Only maintained, if deadlock detection is enabled.
      */
-    private final Map<T, Long> lockCounts = new HashMap<>();
+    private final ConcurrentMap<Thread, ElementLock> waitingThreads = new ConcurrentHashMap<>();
 
     /**
-     * Gets the waiting queue for the given element.
+     * Guards registering waiting threads and checking for cycles, so of two threads closing a cycle at least the second one detects it.
      */
-    private synchronized Queue<Thread> getThreadQueueForElement(T element, boolean addIfMissing) {
-        LOG.trace("Getting thread-queue for element: {}. Add if missing: {}", element, addIfMissing);
-        Queue<Thread> threadQueue = threadQueueMap.get(element);
-        if (threadQueue == null && addIfMissing) {
-            LOG.trace("Adding thread-queue for element: {}", element);
-            threadQueue = new LinkedList<>();
-            threadQueueMap.put(element, threadQueue);
-            lockCounts.put(element, 1L);
+    private final ReentrantLock deadlockDetectionLock = new ReentrantLock();
+
+    private volatile ObjectName mbeanName;
+
+    /**
+     * Enables leases: Each lock is held for the given duration at most. After that, it is revoked (and handed over to the next waiter), even if it is not
+     * unlocked. (The unlocking by the former holder is ignored then.)
+     * <p>
+     * Leases are watched by a shared timer wheel with a precision of some milliseconds.
+     */
+    public Locker<T> withLeaseTime(long leaseTime, TimeUnit timeUnit) {
+        this.leaseNanos = timeUnit.toNanos(leaseTime);
+        return this;
+    }
+
+    /**
+     * Sets the listener called with the element and the locking thread (<code>null</code> for asynchronous locks), if a lease is revoked.
+     * <p>
+     * It is called by the watchdog thread, so it must be short.
+     */
+    public Locker<T> withLeaseRevokedListener(BiConsumer<T, Thread> leaseRevokedListener) {
+        this.leaseRevokedListener = leaseRevokedListener;
+        return this;
+    }
+
+    /**
+     * Sets the fairness policy (default: {@link Fairness#FIFO}). It must be set before the locker is used.
+     */
+    public Locker<T> withFairness(Fairness fairness) {
+        this.fairness = fairness;
+        return this;
+    }
+
+    /**
+     * Enables the detection of deadlocks: Before a thread starts waiting for an element, the chain of holders of the awaited elements (thread -&gt; element
+     * -&gt; holding thread -&gt; awaited element ...) is followed. If it leads back to the current thread, it does not wait, but a {@link DeadlockException}
+     * describing the cycle is thrown.
+     * <p>
+     * Only blocking lock requests take part (not asynchronous ones). There is no overhead, if the element is not locked.
+     */
+    public Locker<T> withDeadlockDetection() {
+        this.deadlockDetection = true;
+        return this;
+    }
+
+    /**
+     * Enables the collection of metrics (see {@link #getMetrics()}). The overhead is low, but not zero, so it is disabled by default.
+     */
+    public Locker<T> withMetrics() {
+        if (statistics == null) {
+            statistics = new Statistics();
+        }
+        return this;
+    }
+
+    /**
+     * Enables the collection of metrics and registers them as MBean (see {@link LockerMXBean}) at the platform MBean server using the given name.
+     */
+    public Locker<T> registerMBean(String name) {
+        withMetrics();
+        try {
+            ObjectName objectName = new ObjectName(MBEAN_DOMAIN + ":type=Locker,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new LockerMXBeanImpl(), objectName);
+            mbeanName = objectName;
+        } catch (JMException e) {
+            String msg = String.format("Registering MBean '%s' failed: %s", name, e.getMessage());
+            LOG.error(msg, e);
+            throw new RuntimeException(msg, e);
+        }
+        return this;
+    }
+
+    /**
+     * Unregisters the MBean registered by {@link #registerMBean(String)} (if any).
+     */
+    public void unregisterMBean() {
+        if (mbeanName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+        } catch (JMException e) {
+            LOG.warn("Unregistering MBean '{}' failed: {}", mbeanName, e.getMessage());
         }
-        return threadQueue;
+        mbeanName = null;
+    }
+
+    /**
+     * Returns a snapshot of the metrics.
+     *
+     * @throws IllegalStateException if metrics are not enabled (see {@link #withMetrics()})
+     */
+    public LockerMetrics<T> getMetrics() {
+        Statistics currentStatistics = statistics;
+        if (currentStatistics == null) {
+            throw new IllegalStateException("Metrics are not enabled.");
+        }
+        return new LockerMetrics<>(getElementCount(), currentStatistics.lockCount.sum(), currentStatistics.contentionCount.sum(),
+                currentStatistics.timeoutCount.sum(), currentStatistics.revokedLeaseCount.sum(), currentStatistics.waitTime.snapshot(),
+                currentStatistics.holdTime.snapshot(), currentStatistics.hotElements.getTop(HOT_ELEMENTS_COUNT), getWaitingCounts());
+    }
+
+    /**
+     * Returns the count of waiting lock requests by element (only elements with waiting lock requests).
+     */
+    public Map<T, Integer> getWaitingCounts() {
+        Map<T, Integer> waitingCounts = new HashMap<>();
+        for (ElementLock elementLock : elementLocks.values()) {
+            int waitingCount = elementLock.getWaitingCount();
+            if (waitingCount > 0) {
+                waitingCounts.put(elementLock.element, waitingCount);
+            }
+        }
+        return waitingCounts;
+    }
+
+    /**
+     * Returns the count of waiting lock requests for the given element.
+     */
+    public int getWaitingCount(T element) {
+        ElementLock elementLock = elementLocks.get(element);
+        return elementLock != null ? elementLock.getWaitingCount() : 0;
+    }
+
+    private void recordContention(T element) {
+        Statistics currentStatistics = statistics;
+        if (currentStatistics != null) {
+            currentStatistics.contentionCount.increment();
+            currentStatistics.hotElements.record(element);
+        }
+    }
+
+    private void recordTimeout() {
+        Statistics currentStatistics = statistics;
+        if (currentStatistics != null) {
+            currentStatistics.timeoutCount.increment();
+        }
+    }
+
+    /**
+     * Gets the lock state for the given element.
+     */
+    private ElementLock getElementLock(T element, boolean addIfMissing) {
+        LOG.trace("Getting element lock for element: {}. Add if missing: {}", element, addIfMissing);
+        return addIfMissing ? elementLocks.computeIfAbsent(element, ElementLock::new) : elementLocks.get(element);
+    }
+
+    /**
+     * Gets the lock state for the given element (and creates it, if needed). Its mutex is locked on return.
+     */
+    private ElementLock lockElementLock(T element) {
+        while (true) {
+            ElementLock elementLock = getElementLock(element, true);
+            elementLock.mutex.lock();
+            // The lock state has been removed concurrently, so we need a new one
+            if (!elementLock.removed) {
+                return elementLock;
+            }
+            elementLock.mutex.unlock();
+        }
+    }
+
+    /**
+     * Returns the count of elements currently held or waited for. (Lock states of other elements are not kept.)
+     */
+    public int getElementCount() {
+        return elementLocks.size();
     }
 
     /**
@@ -81,7 +622,7 @@ public final class Locker<T> implements LockerI<T> {
     }
 
     /**
-     * {@link Locker#lock(Object, long)} using an (almost) infinite waiting time.
+     * {@link Locker#lock(Object, long)} using an infinite waiting time.
      */
     @Override
     public void lock(T element) {
@@ -99,83 +640,428 @@ public final class Locker<T> implements LockerI<T> {
      * {@link Locker#lock(Object, Optional, Optional)} with a mandatory waiting time in milliseconds.
      */
     public void lock(T element, long maxWaitTime) throws TimeoutException {
-        lock(element, Optional.of(maxWaitTime), Optional.empty());
+        lock(element, maxWaitTime, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * {@link Locker#lock(Object, Optional, Optional)} with a mandatory waiting time in the given {@link TimeUnit}.
+     */
+    public void lock(T element, long maxWaitTime, TimeUnit timeUnit) throws TimeoutException {
+        lock(element, Optional.of(timeUnit.toNanos(maxWaitTime)), Optional.empty());
+    }
+
+    /**
+     * Locks the given element (see {@link #lock(Object)}) and returns a handle for unlocking it. Unlocking by the handle needs no lookup of the element, so
+     * it is cheaper than {@link #unlock(Object)}. It can be used with try-with-resources:
+     *
+     * <pre>
+     * try (LockHandle&lt;String&gt; lockHandle = locker.lockWithHandle("LOCKME")) {
+     *     ...
+     * }
+     * </pre>
+     *
+     * Each returned handle must be unlocked (closed) exactly once (also reentrant ones) by the locking thread.
+     */
+    public LockHandle<T> lockWithHandle(T element) {
+        try {
+            return lockWaiter(element, Optional.empty(), Optional.empty());
+        } catch (TimeoutException e) {
+            // Must not happen here
+            String msg = "Unexpected timeout exception: " + e.getMessage();
+            LOG.error(msg, e);
+            throw new RuntimeException(msg, e);
+        }
+    }
+
+    /**
+     * Locks the given element with a mandatory waiting time (see {@link #lock(Object, long, TimeUnit)}) and returns a handle for unlocking it (see
+     * {@link #lockWithHandle(Object)}).
+     */
+    public LockHandle<T> lockWithHandle(T element, long maxWaitTime, TimeUnit timeUnit) throws TimeoutException {
+        return lockWaiter(element, Optional.of(timeUnit.toNanos(maxWaitTime)), Optional.empty());
+    }
+
+    /**
+     * Tries to lock the given element (see {@link #tryLock(Object)}) and returns a handle for unlocking it (see {@link #lockWithHandle(Object)}), if it is
+     * locked.
+     */
+    public Optional<LockHandle<T>> tryLockWithHandle(T element) {
+        try {
+            return Optional.ofNullable(lockWaiter(element, Optional.empty(), Optional.of(Boolean.TRUE)));
+        } catch (TimeoutException e) {
+            // Must not happen here
+            String msg = "Unexpected timeout exception: " + e.getMessage();
+            LOG.error(msg, e);
+            throw new RuntimeException(msg, e);
+        }
+    }
+
+    /**
+     * Locks the given element using an infinite waiting time, unless the current thread is interrupted.<br>
+     * If it is interrupted (before or while waiting), the waiting is aborted at once (the lock request is removed from the queue of the element) and an
+     * {@link InterruptedException} is thrown. (If the lock is handed over to the thread concurrently, it is held and the interrupt status is set.)
+     */
+    public void lockInterruptibly(T element) throws InterruptedException {
+        try {
+            lock(element, Optional.empty(), Optional.empty(), true);
+        } catch (TimeoutException e) {
+            // Must not happen here
+            String msg = "Unexpected timeout exception: " + e.getMessage();
+            LOG.error(msg, e);
+            throw new RuntimeException(msg, e);
+        }
+    }
+
+    /**
+     * Tries to lock the given element within the given waiting time, unless the current thread is interrupted (see {@link #lockInterruptibly(Object)}).
+     *
+     * @return <code>true</code> in case of a succeeded lock, <code>false</code> if the waiting time is exceeded
+     */
+    public boolean tryLock(T element, Duration maxWaitTime) throws InterruptedException {
+        try {
+            return lock(element, Optional.of(maxWaitTime.toNanos()), Optional.empty(), true) != null;
+        } catch (TimeoutException e) {
+            return false;
+        }
     }
 
     /**
      * Locks the given element for the current thread. <br>
-     * If it is already locked (for another thread), it waits for unlock.<br>
-     * If the waiting time exceeds the given one, an {@link TimeoutException} is thrown.
+     * If it is already locked (for another thread), the current thread is parked until the unlocking thread hands the lock over to it.<br>
+     * If the waiting time (in nanoseconds) exceeds the given one, an {@link TimeoutException} is thrown.<br>
+     * If deadlock detection is enabled and waiting would result in a deadlock, a {@link DeadlockException} is thrown.
      */
-    @SuppressWarnings("unchecked")
-    private boolean lock(T element, Optional<Long> optionalMaxWaitTime, Optional<Boolean> tryLock) throws TimeoutException {
-        LOG.info("Locking: {}", element);
+    private boolean lock(T element, Optional<Long> optionalMaxWaitNanos, Optional<Boolean> tryLock) throws TimeoutException {
+        return lockWaiter(element, optionalMaxWaitNanos, tryLock) != null;
+    }
 
-        // We need a unique string (if element if of type String)
-        if (element instanceof String) {
-            element = (T) ((String) element).intern(); // NOSONAR
+    /**
+     * See {@link #lock(Object, Optional, Optional)}.
+     *
+     * @return the waiter holding the lock (<code>null</code>, if a try lock failed)
+     */
+    private Waiter lockWaiter(T element, Optional<Long> optionalMaxWaitNanos, Optional<Boolean> tryLock) throws TimeoutException {
+        try {
+            return lock(element, optionalMaxWaitNanos, tryLock, false);
+        } catch (InterruptedException e) {
+            // Must not happen here
+            String msg = "Unexpected interrupted exception: " + e.getMessage();
+            LOG.error(msg, e);
+            throw new RuntimeException(msg, e);
+        }
+    }
+
+    /**
+     * See {@link #lock(Object, Optional, Optional)}. If interruptible, an interruption aborts the waiting (see {@link #lockInterruptibly(Object)}).
+     */
+    private Waiter lock(T element, Optional<Long> optionalMaxWaitNanos, Optional<Boolean> tryLock, boolean interruptible)
+            throws TimeoutException, InterruptedException {
+        LOG.trace("Locking: {}", element);
+        if (interruptible && Thread.interrupted()) {
+            throw new InterruptedException(String.format("Interrupted before locking '%s'", element));
         }
 
         // Adding to thread queue; This creates the (first) lock, if the queue was empty before
-        addToThreadQueue(element);
+        Waiter waiter = addToThreadQueue(element);
 
         // Check for lock
-        long startTime = System.currentTimeMillis();
-        if (isLocked(element)) {
-            if (tryLock.orElse(Boolean.FALSE)) {
-                removeFromThreadQueueUnsafe(element);
-                LOG.info("Element '{}' is already locked by: {}", element, getLockingThread(element));
-                return false;
+        if (isLockingWaiter(waiter)) {
+            return waiter;
+        }
+        if (tryLock.orElse(Boolean.FALSE)) {
+            if (cancelWaiting(waiter)) {
+                LOG.debug("Element '{}' is already locked by: {}", element, getLockingThread(element));
+                return null;
             }
-            LOG.info("Waiting for lock of '{}'. Locked by: {}", element, getLockingThread(element));
+            return waiter; // Lock was handed over to us in the meantime
         }
-        // Wait for lock (by other thread), if any
-        long maxWaitTime = optionalMaxWaitTime.orElse(1_000L * 60L * 24L * 365L * 1_000_000_000L); // ~1 billion years
-        while (isLocked(element) && (System.currentTimeMillis() <= startTime + maxWaitTime)) {
-            try {
-                Thread.sleep(10);
-            } catch (InterruptedException e) {
-                // Interruption here is okay.
+        LOG.debug("Waiting for lock of '{}'. Locked by: {}", element, getLockingThread(element));
+
+        // Wait for lock (by other thread)
+        boolean detectDeadlock = deadlockDetection;
+        boolean locked;
+        try {
+            if (detectDeadlock && !registerWaitingThread(waiter)) {
+                return waiter; // Lock was handed over to us in the meantime
+            }
+            locked = awaitLock(waiter, optionalMaxWaitNanos, interruptible);
+        } finally {
+            if (detectDeadlock) {
+                waitingThreads.remove(waiter.thread);
             }
         }
-        // Check if time exceeded while waiting on lock
-        if (isLocked(element) && (System.currentTimeMillis() > startTime + maxWaitTime)) {
-            removeFromThreadQueueUnsafe(element);
-            String msg = String.format("Time (%d ms) exceeded for waiting on locked '%s'. Locked by: %s", maxWaitTime, element, getLockingThread(element));
-            LOG.info(msg);
+        if (!locked) {
+            String msg = String.format("Time (%d ns) exceeded for waiting on locked '%s'. Locked by: %s", optionalMaxWaitNanos.orElse(0L), element,
+                    getLockingThread(element));
+            LOG.debug(msg);
+            recordTimeout();
             throw new TimeoutException(msg);
         }
-        return true; // Element was locked
+        return waiter; // Element was locked
+    }
+
+    /**
+     * Registers the thread of the given waiter in the wait-for graph and checks, if waiting would result in a deadlock.
+     *
+     * @return <code>true</code>, if the thread must wait, <code>false</code>, if the lock was handed over to it in the meantime
+     * @throws DeadlockException if waiting would result in a deadlock (the waiter is removed from the thread queue then)
+     */
+    private boolean registerWaitingThread(Waiter waiter) {
+        List<Thread> threads = new ArrayList<>();
+        List<Object> elements = new ArrayList<>();
+        deadlockDetectionLock.lock();
+        try {
+            waitingThreads.put(waiter.thread, waiter.elementLock);
+            Thread thread = waiter.thread;
+            ElementLock awaitedElementLock = waiter.elementLock;
+            while (true) {
+                Thread holdingThread = awaitedElementLock.getLockingThread();
+                if (holdingThread == null || holdingThread == thread) {
+                    return true; // No holder (anymore) or an asynchronous one, so there is no cycle
+                }
+                threads.add(thread);
+                elements.add(awaitedElementLock.element);
+                if (holdingThread == waiter.thread) {
+                    break; // Cycle found
+                }
+                if (threads.contains(holdingThread)) {
+                    return true; // Cycle without the current thread (detected by one of its threads)
+                }
+                thread = holdingThread;
+                awaitedElementLock = waitingThreads.get(holdingThread);
+                if (awaitedElementLock == null) {
+                    return true; // Holding thread does not wait
+                }
+            }
+            waitingThreads.remove(waiter.thread);
+        } finally {
+            deadlockDetectionLock.unlock();
+        }
+        if (!cancelWaiting(waiter)) {
+            return false;
+        }
+        StringBuilder cycle = new StringBuilder();
+        for (int i = 0; i < threads.size(); i++) {
+            cycle.append(String.format("'%s' waits for '%s' held by ", threads.get(i), elements.get(i)));
+        }
+        cycle.append('\'').append(waiter.thread).append('\'');
+        String msg = "Deadlock detected: " + cycle;
+        LOG.warn(msg);
+        throw new DeadlockException(msg, threads, elements);
+    }
+
+    /**
+     * Parks the current thread until it is the first one of the thread queue (and so holds the lock) or the waiting time is exceeded.<br>
+     * If not interruptible, interruptions do not abort the waiting, but the interrupt status is restored afterwards.
+     *
+     * @return <code>true</code>, if the lock is held by the current thread, <code>false</code> if the waiting time is exceeded (the current thread is
+     * removed from the queue then)
+     * @throws InterruptedException if interruptible and interrupted (the current thread is removed from the queue then)
+     */
+    private boolean awaitLock(Waiter waiter, Optional<Long> optionalMaxWaitNanos, boolean interruptible) throws InterruptedException {
+        boolean interrupted = false;
+        long deadline = System.nanoTime() + optionalMaxWaitNanos.orElse(0L);
+        try {
+            while (!isLockingWaiter(waiter) && !tryBarge(waiter)) {
+                if (optionalMaxWaitNanos.isPresent()) {
+                    long remainingNanos = deadline - System.nanoTime();
+                    if (remainingNanos <= 0L) {
+                        if (cancelWaiting(waiter)) {
+                            return false;
+                        }
+                        continue; // Lock was handed over to us in the meantime
+                    }
+                    LockSupport.parkNanos(this, remainingNanos);
+                } else {
+                    LockSupport.park(this);
+                }
+                if (Thread.interrupted()) {
+                    interrupted = true;
+                    if (interruptible && cancelWaiting(waiter)) {
+                        LOG.debug("Interrupted while waiting for lock of '{}'", waiter.elementLock.element);
+                        interrupted = false;
+                        throw new InterruptedException(String.format("Interrupted while waiting for lock of '%s'", waiter.elementLock.element));
+                    }
+                }
+            }
+            return true;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
     /**
      * Add current thread to queue of waiting threads for given element.
+     *
+     * @return the waiter of the current thread (which is the locking one, if the element is already locked by the current thread)
      */
-    private void addToThreadQueue(T element) {
-        // Create map entry in waiting queue for element, if needed
-        Queue<Thread> threadQueue = getThreadQueueForElement(element, true);
-        synchronized (threadQueue) {
-            // Check, if element is locked by current thread, then increase counter
-            if (isHeldByCurrentThread(element)) {
-                lockCounts.merge(element, 1L, Long::sum);
-                LOG.debug("Element is already locked by current thread. Increased lock count: {}", lockCounts.get(element));
+    private Waiter addToThreadQueue(T element) {
+        ElementLock elementLock = lockElementLock(element);
+        try {
+            return addToThreadQueue(elementLock);
+        } finally {
+            elementLock.mutex.unlock();
+        }
+    }
+
+    /**
+     * Must be called guarded by the mutex of the given element lock.
+     */
+    private Waiter addToThreadQueue(ElementLock elementLock) {
+        Thread currentThread = Thread.currentThread();
+        // Check, if element is locked by current thread, then increase counter
+        if (elementLock.getLockingThread() == currentThread) {
+            elementLock.lockCount++;
+            LOG.debug("Element is already locked by current thread. Increased lock count: {}", elementLock.lockCount);
+            return elementLock.lockingWaiter;
+        }
+        // If element is not held by current thread, add it to the waiting queue.
+        Waiter waiter = new Waiter(elementLock, currentThread);
+        addWaiter(elementLock, waiter);
+        LOG.trace("Added thread '{}' to waiting queue for '{}'", currentThread, elementLock.element);
+        if (elementLock.lockingWaiter != waiter) {
+            recordContention(elementLock.element);
+        }
+        return waiter;
+    }
+
+    /**
+     * Adds the given waiter to the thread queue (at the head, if it barges in an unlocked element). Must be called guarded by the mutex of its element lock.
+     */
+    private void addWaiter(ElementLock elementLock, Waiter waiter) {
+        if (fairness == Fairness.BARGING && elementLock.lockingWaiter == null) {
+            elementLock.threadQueue.addFirst(waiter);
+        } else {
+            elementLock.threadQueue.add(waiter);
+        }
+        elementLock.updateLockingWaiter();
+    }
+
+    private boolean isLockingWaiter(Waiter waiter) {
+        return waiter.elementLock.lockingWaiter == waiter;
+    }
+
+    /**
+     * Takes the lock for the given (woken up) waiter, if barging is enabled and the element is unlocked.
+     *
+     * @return <code>true</code>, if the waiter holds the lock now
+     */
+    private boolean tryBarge(Waiter waiter) {
+        ElementLock elementLock = waiter.elementLock;
+        if (fairness != Fairness.BARGING || elementLock.lockingWaiter != null) {
+            return false;
+        }
+        elementLock.mutex.lock();
+        try {
+            if (elementLock.lockingWaiter != null) {
+                return false;
+            }
+            elementLock.threadQueue.remove(waiter);
+            elementLock.threadQueue.addFirst(waiter);
+            elementLock.updateLockingWaiter();
+            return true;
+        } finally {
+            elementLock.mutex.unlock();
+        }
+    }
+
+    /**
+     * Removes the given waiter from the thread queue, if it does not hold the lock meanwhile.
+     *
+     * @return <code>true</code>, if removed, <code>false</code>, if the lock was handed over to the waiter before
+     */
+    private boolean cancelWaiting(Waiter waiter) {
+        ElementLock elementLock = waiter.elementLock;
+        Waiter nextWaiter = null;
+        elementLock.mutex.lock();
+        try {
+            if (elementLock.lockingWaiter == waiter) {
+                return false;
             }
-            // If element is not held by current thread, add it to the waiting queue.
-            else {
-                Thread currentThread = Thread.currentThread();
-                threadQueue.add(currentThread);
-                LOG.trace("Added thread '{}' to waiting queue for '{}'", currentThread, element);
+            LOG.trace("Removing '{}' from waiting queue", waiter);
+            elementLock.threadQueue.remove(waiter);
+            if (elementLock.lockingWaiter == null) {
+                nextWaiter = grantNextWaiter(elementLock); // With barging, the waiter may have swallowed the wake-up of the unlocked element
+            } else {
+                elementLock.removeIfUnused();
             }
+        } finally {
+            elementLock.mutex.unlock();
         }
+        if (nextWaiter != null) {
+            handOver(nextWaiter);
+        }
+        return true;
+    }
+
+    /**
+     * Locks the given element asynchronously. The returned future is completed with the {@link LockHandle} (in the unlocking thread), as soon as the element
+     * is unlocked by all previous lockers (in FIFO order).
+     * <p>
+     * The lock is not bound to a thread (and not reentrant), it must be unlocked using {@link LockHandle#unlock()}. Cancelling the future removes the lock
+     * request from the queue of the element (or unlocks it, if it has already been handed over).
+     */
+    public CompletableFuture<LockHandle<T>> lockAsync(T element) {
+        return lockAsync(element, Optional.empty(), Optional.empty());
+    }
+
+    /**
+     * {@link Locker#lockAsync(Object)}, but the future is completed using the given {@link Executor}.
+     */
+    public CompletableFuture<LockHandle<T>> lockAsync(T element, Executor executor) {
+        return lockAsync(element, Optional.empty(), Optional.of(executor));
+    }
+
+    /**
+     * {@link Locker#lockAsync(Object)} with a mandatory waiting time in the given {@link TimeUnit}. If it exceeds, the future is completed exceptionally with
+     * a {@link TimeoutException}.
+     */
+    public CompletableFuture<LockHandle<T>> lockAsync(T element, long maxWaitTime, TimeUnit timeUnit) {
+        return lockAsync(element, Optional.of(timeUnit.toNanos(maxWaitTime)), Optional.empty());
     }
 
-    private void removeFromThreadQueueUnsafe(T element) {
-        Queue<Thread> threadQueue = getThreadQueueForElement(element, false);
-        synchronized (threadQueue) {
-            Thread currentThread = Thread.currentThread();
-            LOG.trace("Removing thread '{}' from waiting queue for '{}'", currentThread, element);
-            threadQueue.remove(currentThread);
+    /**
+     * {@link Locker#lockAsync(Object, long, TimeUnit)}, but the future is completed using the given {@link Executor}.
+     */
+    public CompletableFuture<LockHandle<T>> lockAsync(T element, long maxWaitTime, TimeUnit timeUnit, Executor executor) {
+        return lockAsync(element, Optional.of(timeUnit.toNanos(maxWaitTime)), Optional.of(executor));
+    }
+
+    private CompletableFuture<LockHandle<T>> lockAsync(T element, Optional<Long> optionalMaxWaitNanos, Optional<Executor> optionalExecutor) {
+        LOG.trace("Locking asynchronously: {}", element);
+        CompletableFuture<LockHandle<T>> future = new CompletableFuture<>();
+        ElementLock elementLock = lockElementLock(element);
+        Waiter asyncWaiter = new Waiter(elementLock, null, future, optionalExecutor.orElse(null));
+        try {
+            addWaiter(elementLock, asyncWaiter);
+            if (elementLock.lockingWaiter != asyncWaiter) {
+                recordContention(element);
+            }
+        } finally {
+            elementLock.mutex.unlock();
         }
+        future.whenComplete((lockHandle, throwable) -> {
+            if (throwable != null) {
+                LOG.debug("Asynchronous lock request for '{}' completed exceptionally: {}", element, throwable.toString());
+                if (!cancelWaiting(asyncWaiter)) {
+                    release(asyncWaiter); // The lock has already been handed over, but not delivered
+                }
+            }
+        });
+        if (isLockingWaiter(asyncWaiter)) {
+            handOver(asyncWaiter);
+        } else if (optionalMaxWaitNanos.isPresent()) {
+            ScheduledFuture<?> timeoutTask = TIMEOUT_SCHEDULER.get().schedule(() -> {
+                if (future.completeExceptionally(
+                        new TimeoutException(String.format("Time (%d ns) exceeded for waiting on locked '%s'", optionalMaxWaitNanos.get(), element)))) {
+                    recordTimeout();
+                }
+            }, optionalMaxWaitNanos.get(), TimeUnit.NANOSECONDS);
+            future.whenComplete((lockHandle, throwable) -> timeoutTask.cancel(false));
+        }
+        return future;
     }
 
     /**
@@ -188,58 +1074,288 @@ public final class Locker<T> implements LockerI<T> {
         if (element == null) {
             return;
         }
-        LOG.info("Unlocking: {}", element);
-        Queue<Thread> threadQueue = getThreadQueueForElement(element, false);
-        if (threadQueue == null) {
+        LOG.trace("Unlocking: {}", element);
+        ElementLock elementLock = getElementLock(element, false);
+        if (elementLock == null) {
             LOG.warn("The element '{}' is NOT locked!", element);
             return;
         }
-        synchronized (threadQueue) {
-            Thread lockingThread = threadQueue.peek();
-            Thread currentThread = Thread.currentThread();
-            if (lockingThread != currentThread) {
-                LOG.info("The element '{}' is NOT locked by the current thread '{}'. It is locked by thread '{}' -> IGNORED!", element, currentThread,
-                        lockingThread);
+        Waiter lockingWaiter = elementLock.lockingWaiter;
+        if (lockingWaiter == null || lockingWaiter.thread != Thread.currentThread()) {
+            LOG.info("The element '{}' is NOT locked by the current thread '{}'. It is locked by '{}' -> IGNORED!", element, Thread.currentThread(),
+                    lockingWaiter);
+            return;
+        }
+        release(lockingWaiter);
+    }
+
+    /**
+     * Releases the lock of the given waiter and hands it over to the next one (if any).
+     */
+    private void release(Waiter waiter) {
+        ElementLock elementLock = waiter.elementLock;
+        Waiter nextWaiter;
+        elementLock.mutex.lock();
+        try {
+            if (elementLock.lockingWaiter != waiter) {
+                LOG.info("The element '{}' is NOT locked by '{}' (anymore) -> IGNORED!", elementLock.element, waiter);
                 return;
             }
-            if (lockCounts.get(element) == 1) {
-                threadQueue.remove();
-                LOG.trace("Unlocked.");
-            } else {
-                lockCounts.merge(element, 1L, (old, dec) -> old - dec);
-                LOG.debug("Unlocking not possible, because locked more than once. Decreased lock counter to {}", lockCounts.get(element));
+            if (elementLock.lockCount > 1) {
+                elementLock.lockCount--;
+                LOG.debug("Unlocking not possible, because locked more than once. Decreased lock counter to {}", elementLock.lockCount);
+                return;
+            }
+            nextWaiter = removeLockingWaiter(elementLock);
+            LOG.trace("Unlocked.");
+        } finally {
+            elementLock.mutex.unlock();
+        }
+        // Hand over the lock to the next waiter (outside of the guarded block, because futures may execute dependent actions)
+        if (nextWaiter != null) {
+            handOver(nextWaiter);
+        }
+    }
+
+    /**
+     * Removes the locking waiter from the thread queue. Must be called guarded by the mutex of the given element lock.
+     *
+     * @return the next waiter, which holds the lock now or must be woken up (see {@link #grantNextWaiter(ElementLock)})
+     */
+    private Waiter removeLockingWaiter(ElementLock elementLock) {
+        elementLock.threadQueue.remove();
+        elementLock.lockCount = 1L;
+        return grantNextWaiter(elementLock);
+    }
+
+    /**
+     * Grants the lock of the unlocked element to the first waiter. With barging, the first waiting thread is just woken up (and the element stays unlocked
+     * until it takes the lock). Must be called guarded by the mutex of the given element lock.
+     *
+     * @return the next waiter, which holds the lock now or must be woken up (or <code>null</code>)
+     */
+    private Waiter grantNextWaiter(ElementLock elementLock) {
+        Waiter nextWaiter = elementLock.threadQueue.peek();
+        if (fairness == Fairness.BARGING && nextWaiter != null && nextWaiter.thread != null) {
+            elementLock.setLockingWaiter(null);
+            return nextWaiter;
+        }
+        elementLock.updateLockingWaiter();
+        if (nextWaiter == null) {
+            elementLock.removeIfUnused();
+        }
+        return nextWaiter;
+    }
+
+    /**
+     * Revokes the lock of the given waiter, because its lease is expired.
+     */
+    private void revokeLease(Waiter waiter) {
+        ElementLock elementLock = waiter.elementLock;
+        Waiter nextWaiter;
+        elementLock.mutex.lock();
+        try {
+            if (elementLock.lockingWaiter != waiter) {
+                return; // Unlocked in the meantime
+            }
+            LOG.warn("Lease of lock on '{}' held by '{}' expired. Revoking lock.", elementLock.element, waiter);
+            Statistics currentStatistics = statistics;
+            if (currentStatistics != null) {
+                currentStatistics.revokedLeaseCount.increment();
+            }
+            nextWaiter = removeLockingWaiter(elementLock);
+        } finally {
+            elementLock.mutex.unlock();
+        }
+        try {
+            leaseRevokedListener.accept(elementLock.element, waiter.thread);
+        } finally {
+            if (nextWaiter != null) {
+                handOver(nextWaiter);
             }
         }
     }
 
     /**
-     * Returns <code>true</code>, if locked (by another thread).
+     * Notifies the given waiter, that it holds the lock now.
+     */
+    private void handOver(Waiter waiter) {
+        LOG.trace("Handing over lock to '{}'", waiter);
+        if (waiter.thread != null) {
+            LockSupport.unpark(waiter.thread);
+        } else if (waiter.executor != null) {
+            try {
+                waiter.executor.execute(() -> waiter.future.complete(waiter));
+            } catch (RejectedExecutionException e) {
+                LOG.warn("Executor rejected completion of asynchronous lock request for '{}'. Completing it in current thread.", waiter.getElement());
+                waiter.future.complete(waiter);
+            }
+        } else {
+            waiter.future.complete(waiter);
+        }
+    }
+
+    /**
+     * Returns <code>true</code>, if locked (by another thread or asynchronously).
      */
     @Override
     public boolean isLocked(T element) {
-        if (threadQueueMap.containsKey(element)) {
-            Thread thread = threadQueueMap.get(element).peek();
-            return thread != null && thread != Thread.currentThread();
-        }
-        return false;
+        ElementLock elementLock = elementLocks.get(element);
+        Waiter lockingWaiter = elementLock != null ? elementLock.lockingWaiter : null;
+        return lockingWaiter != null && lockingWaiter.thread != Thread.currentThread();
     }
 
     /**
      * Return <code>true</code>, if locked by current thread.
      */
     public boolean isHeldByCurrentThread(T element) {
-        if (threadQueueMap.containsKey(element)) {
-            Thread thread = threadQueueMap.get(element).peek();
-            return thread != null && thread == Thread.currentThread();
+        Thread thread = getLockingThread(element);
+        return thread != null && thread == Thread.currentThread();
+    }
+
+    /**
+     * Returns the count of (reentrant) locks of the given element held by the current thread (<code>0</code>, if it is not locked by the current thread).
+     */
+    public long getHoldCount(T element) {
+        ElementLock elementLock = elementLocks.get(element);
+        if (elementLock == null) {
+            return 0L;
+        }
+        elementLock.mutex.lock();
+        try {
+            return elementLock.getLockingThread() == Thread.currentThread() ? elementLock.lockCount : 0L;
+        } finally {
+            elementLock.mutex.unlock();
         }
-        return false;
     }
 
     /**
      * Get currently locking thread.
      */
     public Thread getLockingThread(T element) {
-        return threadQueueMap.containsKey(element) ? threadQueueMap.get(element).peek() : null;
+        ElementLock elementLock = elementLocks.get(element);
+        return elementLock != null ? elementLock.getLockingThread() : null;
+    }
+
+    /**
+     * Tries to lock all given elements. Either all elements are locked (if none of them is locked by another thread) or none of them.
+     *
+     * @return <code>true</code> in case of succeeded locks, <code>false</code> otherwise
+     */
+    public boolean tryLockAll(Collection<T> elements) {
+        List<T> lockedElements = new ArrayList<>(elements.size());
+        for (T element : getLockOrder(elements)) {
+            if (!tryLock(element)) {
+                LOG.debug("Element '{}' is already locked. Unlocking already locked ones: {}", element, lockedElements);
+                unlockAll(lockedElements);
+                return false;
+            }
+            lockedElements.add(element);
+        }
+        return true;
+    }
+
+    /**
+     * {@link Locker#lockAll(Collection, long, TimeUnit)} using an infinite waiting time.
+     */
+    public void lockAll(Collection<T> elements) {
+        try {
+            lockAll(elements, Optional.empty());
+        } catch (TimeoutException e) {
+            // Must not happen here
+            String msg = "Unexpected timeout exception: " + e.getMessage();
+            LOG.error(msg, e);
+            throw new RuntimeException(msg, e);
+        }
+    }
+
+    /**
+     * Locks all given elements for the current thread. Either all elements are locked or (if the waiting time for all of them is exceeded) none of them.
+     * <p>
+     * The elements are locked in a consistent global order (by their hash code), so concurrent calls with overlapping elements do not deadlock each other.
+     * (Distinct elements with equal hash codes are ordered by a rank, that is shared by all concurrent calls.)
+     */
+    public void lockAll(Collection<T> elements, long maxWaitTime, TimeUnit timeUnit) throws TimeoutException {
+        lockAll(elements, Optional.of(timeUnit.toNanos(maxWaitTime)));
+    }
+
+    private void lockAll(Collection<T> elements, Optional<Long> optionalMaxWaitNanos) throws TimeoutException {
+        List<T> orderedElements = getLockOrder(elements);
+        List<T> tiedElements = getElementsWithEqualHashCodes(orderedElements);
+        Map<T, Long> ranks = acquireTieRanks(tiedElements);
+        try {
+            if (!ranks.isEmpty()) {
+                orderedElements.sort(Comparator.<T> comparingInt(Object::hashCode).thenComparingLong(element -> ranks.getOrDefault(element, 0L)));
+            }
+            LOG.trace("Locking all: {}", orderedElements);
+            long deadline = System.nanoTime() + optionalMaxWaitNanos.orElse(0L);
+            List<T> lockedElements = new ArrayList<>(orderedElements.size());
+            try {
+                for (T element : orderedElements) {
+                    lock(element, optionalMaxWaitNanos.map(maxWaitNanos -> deadline - System.nanoTime()), Optional.empty());
+                    lockedElements.add(element);
+                }
+            } catch (TimeoutException | RuntimeException e) {
+                LOG.debug("Locking all elements failed. Unlocking already locked ones: {}", lockedElements);
+                unlockAll(lockedElements);
+                throw e;
+            }
+        } finally {
+            releaseTieRanks(tiedElements);
+        }
+    }
+
+    /**
+     * Returns the ranks of the given elements (and registers their usage).
+     */
+    private Map<T, Long> acquireTieRanks(List<T> elements) {
+        Map<T, Long> ranks = new HashMap<>();
+        for (T element : elements) {
+            TieRank tieRank = tieRanks.compute(element, (key, existingTieRank) -> {
+                TieRank newTieRank = existingTieRank != null ? existingTieRank : new TieRank(tieRankSequence.incrementAndGet());
+                newTieRank.useCount++;
+                return newTieRank;
+            });
+            ranks.put(element, tieRank.rank);
+        }
+        return ranks;
+    }
+
+    private void releaseTieRanks(List<T> elements) {
+        for (T element : elements) {
+            tieRanks.computeIfPresent(element, (key, tieRank) -> --tieRank.useCount == 0 ? null : tieRank);
+        }
+    }
+
+    /**
+     * Returns the distinct elements in the order they must be locked.
+     */
+    private List<T> getLockOrder(Collection<T> elements) {
+        List<T> orderedElements = new ArrayList<>(new LinkedHashSet<>(elements));
+        orderedElements.sort(Comparator.comparingInt(Object::hashCode));
+        return orderedElements;
+    }
+
+    /**
+     * Returns the elements, that have a hash code equal to another element, of the given elements (ordered by hash code).
+     */
+    private List<T> getElementsWithEqualHashCodes(List<T> orderedElements) {
+        List<T> tiedElements = new ArrayList<>();
+        for (int i = 0; i < orderedElements.size(); i++) {
+            int hashCode = orderedElements.get(i).hashCode();
+            if ((i > 0 && orderedElements.get(i - 1).hashCode() == hashCode)
+                    || (i < orderedElements.size() - 1 && orderedElements.get(i + 1).hashCode() == hashCode)) {
+                tiedElements.add(orderedElements.get(i));
+            }
+        }
+        return tiedElements;
+    }
+
+    /**
+     * Unlocks all given elements. (Like {@link #unlock(Object)} for each distinct element.)
+     */
+    public void unlockAll(Collection<T> elements) {
+        new LinkedHashSet<>(elements).forEach(this::unlock);
     }
 
     /**
@@ -341,4 +1457,29 @@ public final class Locker<T> implements LockerI<T> {
         }
     }
 
+    /**
+     * Locks all elements using {@link #lockAll(Collection)}, then executes given {@link Runnable} and finally unlocks all elements. (Execute-around-method-pattern.)
+     */
+    public void executeWithLocks(Collection<T> elements, Runnable task) {
+        lockAll(elements);
+        try {
+            task.run();
+        } finally {
+            unlockAll(elements);
+        }
+    }
+
+    /**
+     * Locks all elements using {@link #lockAll(Collection)}, then executes given {@link Supplier}, returns its result and finally unlocks all elements.
+     * (Execute-around-method-pattern.)
+     */
+    public <S> S executeWithLocks(Collection<T> elements, Supplier<S> supplier) {
+        lockAll(elements);
+        try {
+            return supplier.get();
+        } finally {
+            unlockAll(elements);
+        }
+    }
+
 }
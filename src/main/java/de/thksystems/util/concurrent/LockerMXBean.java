@@ -0,0 +1,42 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent;
+
+import java.util.Map;
+
+/**
+ * JMX interface of the metrics of a {@link Locker} (see {@link Locker#registerMBean(String)}). Times are in nanoseconds.
+ */
+public interface LockerMXBean {
+
+    int getElementCount();
+
+    long getLockCount();
+
+    long getContentionCount();
+
+    long getTimeoutCount();
+
+    long getRevokedLeaseCount();
+
+    double getWaitTimeMean();
+
+    long getWaitTime99thPercentile();
+
+    long getWaitTimeMax();
+
+    double getHoldTimeMean();
+
+    long getHoldTime99thPercentile();
+
+    long getHoldTimeMax();
+
+    Map<String, Long> getHotElements();
+
+    Map<String, Integer> getWaitingCounts();
+}
@@ -0,0 +1,117 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of the metrics of a {@link Locker} (see {@link Locker#withMetrics()}) or a {@link KeyedSemaphore}.
+ */
+public final class LockerMetrics<T> {
+
+    private final int elementCount;
+
+    private final long lockCount;
+
+    private final long contentionCount;
+
+    private final long timeoutCount;
+
+    private final long revokedLeaseCount;
+
+    private final LatencyHistogram.Snapshot waitTime;
+
+    private final LatencyHistogram.Snapshot holdTime;
+
+    private final Map<T, Long> hotElements;
+
+    private final Map<T, Integer> waitingCounts;
+
+    LockerMetrics(int elementCount, long lockCount, long contentionCount, long timeoutCount, long revokedLeaseCount, LatencyHistogram.Snapshot waitTime,
+            LatencyHistogram.Snapshot holdTime, Map<T, Long> hotElements, Map<T, Integer> waitingCounts) {
+        this.elementCount = elementCount;
+        this.lockCount = lockCount;
+        this.contentionCount = contentionCount;
+        this.timeoutCount = timeoutCount;
+        this.revokedLeaseCount = revokedLeaseCount;
+        this.waitTime = waitTime;
+        this.holdTime = holdTime;
+        this.hotElements = Collections.unmodifiableMap(hotElements);
+        this.waitingCounts = Collections.unmodifiableMap(waitingCounts);
+    }
+
+    /**
+     * Count of elements currently held or waited for.
+     */
+    public int getElementCount() {
+        return elementCount;
+    }
+
+    /**
+     * Count of acquired locks (without reentrant ones).
+     */
+    public long getLockCount() {
+        return lockCount;
+    }
+
+    /**
+     * Count of lock requests, that had to wait (or failed), because the element was locked.
+     */
+    public long getContentionCount() {
+        return contentionCount;
+    }
+
+    /**
+     * Count of lock requests, that exceeded their waiting time.
+     */
+    public long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    /**
+     * Count of locks revoked, because their lease expired.
+     */
+    public long getRevokedLeaseCount() {
+        return revokedLeaseCount;
+    }
+
+    /**
+     * Histogram of the times waited for locks (in nanoseconds).
+     */
+    public LatencyHistogram.Snapshot getWaitTime() {
+        return waitTime;
+    }
+
+    /**
+     * Histogram of the times locks are held (in nanoseconds).
+     */
+    public LatencyHistogram.Snapshot getHoldTime() {
+        return holdTime;
+    }
+
+    /**
+     * The most contended elements with their (estimated) count of contentions, ordered by count descending.
+     */
+    public Map<T, Long> getHotElements() {
+        return hotElements;
+    }
+
+    /**
+     * Count of currently waiting lock requests by element (only elements with waiting lock requests).
+     */
+    public Map<T, Integer> getWaitingCounts() {
+        return waitingCounts;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LockerMetrics[elements=%d, locks=%d, contentions=%d, timeouts=%d, revokedLeases=%d, waitTime=(%s), holdTime=(%s), hot=%s]",
+                elementCount, lockCount, contentionCount, timeoutCount, revokedLeaseCount, waitTime, holdTime, hotElements);
+    }
+}
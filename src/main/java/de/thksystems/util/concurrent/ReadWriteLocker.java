@@ -0,0 +1,509 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Read/write locking util. Like {@link Locker}, but an element may be locked shared (for reading) by many threads at once or exclusively (for writing) by a
+ * single thread. The methods of {@link LockerI} are the exclusive (write) ones.
+ * <p>
+ * Both lock types are reentrant. A thread holding the write lock may also acquire the read lock, so the write lock can be downgraded (see
+ * {@link #downgrade(Object)}). The only reading thread of an element can upgrade to the write lock (see {@link #tryUpgrade(Object)}).
+ * <p>
+ * With writer preference, new readers wait as long as a writer is waiting. Otherwise, readers may overtake waiting writers (more throughput, but writers
+ * may starve).
+ */
+public final class ReadWriteLocker<T> implements ReadWriteLockerI<T> {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ReadWriteLocker.class);
+
+    /**
+     * Lock state of an element. Accesses must be guarded by its mutex (except for reading the volatile fields).
+     * <p>
+     * It exists only as long as a thread holds or waits for the element. After that, it is removed from the element table and must not be used anymore.
+     */
+    private final class ElementLock {
+
+        private final T element;
+
+        private final ReentrantLock mutex = new ReentrantLock();
+
+        /**
+         * Signalled, if a lock is released (or a waiting writer gives up).
+         */
+        private final Condition released = mutex.newCondition();
+
+        /**
+         * Count of read locks by reading thread.
+         */
+        private final Map<Thread, Long> readCounts = new HashMap<>();
+
+        /**
+         * Count of write locks by writing thread.
+         */
+        private long writeCount = 0L;
+
+        private volatile Thread writingThread;
+
+        private volatile int readingThreadCount;
+
+        private int waitingReaders;
+
+        private int waitingWriters;
+
+        private boolean removed = false;
+
+        private ElementLock(T element) {
+            this.element = element;
+        }
+
+        private boolean canRead(Thread thread) {
+            // Reentrant read locks and read locks of the writing thread are always granted, otherwise we would deadlock.
+            return readCounts.containsKey(thread) || writingThread == thread || (writingThread == null && !(writerPreference && waitingWriters > 0));
+        }
+
+        private boolean canWrite(Thread thread) {
+            return writingThread == thread || (writingThread == null && (readCounts.isEmpty() || isOnlyReader(thread)));
+        }
+
+        private boolean isOnlyReader(Thread thread) {
+            return readCounts.size() == 1 && readCounts.containsKey(thread);
+        }
+
+        private void grant(Thread thread, boolean write) {
+            if (write) {
+                writingThread = thread;
+                writeCount++;
+            } else {
+                readCounts.merge(thread, 1L, Long::sum);
+                readingThreadCount = readCounts.size();
+            }
+        }
+
+        /**
+         * Removes this lock state from the element table, if no thread holds or waits for the element anymore.
+         */
+        private void removeIfUnused() {
+            if (writingThread == null && readCounts.isEmpty() && waitingReaders == 0 && waitingWriters == 0) {
+                LOG.trace("Removing element lock for element: {}", element);
+                removed = true;
+                elementLocks.remove(element, this);
+            }
+        }
+    }
+
+    /**
+     * Lock states of the elements.
+     */
+    private final ConcurrentMap<T, ElementLock> elementLocks = new ConcurrentHashMap<>();
+
+    private final boolean writerPreference;
+
+    /**
+     * Creates a read/write locker without writer preference.
+     */
+    public ReadWriteLocker() {
+        this(false);
+    }
+
+    /**
+     * Creates a read/write locker. With writer preference, new readers wait as long as a writer is waiting.
+     */
+    public ReadWriteLocker(boolean writerPreference) {
+        this.writerPreference = writerPreference;
+    }
+
+    /**
+     * Gets the lock state for the given element (and creates it, if needed). Its mutex is locked on return.
+     */
+    private ElementLock lockElementLock(T element) {
+        while (true) {
+            ElementLock elementLock = elementLocks.computeIfAbsent(element, ElementLock::new);
+            elementLock.mutex.lock();
+            // The lock state has been removed concurrently, so we need a new one
+            if (!elementLock.removed) {
+                return elementLock;
+            }
+            elementLock.mutex.unlock();
+        }
+    }
+
+    /**
+     * Returns the count of elements currently held or waited for. (Lock states of other elements are not kept.)
+     */
+    public int getElementCount() {
+        return elementLocks.size();
+    }
+
+    /**
+     * Tries to lock the given element for writing. It will be locked, if it is neither locked for writing by another thread nor locked for reading by other
+     * threads. (So, if the current thread is the only reader, the lock is upgraded.)
+     *
+     * @return <code>true</code> in case of a succeeded lock, <code>false</code> otherwise
+     */
+    @Override
+    public boolean tryLock(T element) {
+        return tryLock(element, true);
+    }
+
+    /**
+     * Locks the given element for writing using an infinite waiting time.
+     */
+    @Override
+    public void lock(T element) {
+        lockWithoutTimeout(element, true);
+    }
+
+    /**
+     * Locks the given element for writing with a mandatory waiting time in the given {@link TimeUnit}.
+     */
+    public void lock(T element, long maxWaitTime, TimeUnit timeUnit) throws TimeoutException {
+        lock(element, true, Optional.of(timeUnit.toNanos(maxWaitTime)), false);
+    }
+
+    /**
+     * Tries to lock the given element for reading. It will be locked, if it is not locked for writing by another thread (and, with writer preference, no
+     * writer is waiting).
+     *
+     * @return <code>true</code> in case of a succeeded lock, <code>false</code> otherwise
+     */
+    @Override
+    public boolean tryReadLock(T element) {
+        return tryLock(element, false);
+    }
+
+    /**
+     * Locks the given element for reading using an infinite waiting time.
+     */
+    @Override
+    public void readLock(T element) {
+        lockWithoutTimeout(element, false);
+    }
+
+    /**
+     * Locks the given element for reading with a mandatory waiting time in the given {@link TimeUnit}.
+     */
+    public void readLock(T element, long maxWaitTime, TimeUnit timeUnit) throws TimeoutException {
+        lock(element, false, Optional.of(timeUnit.toNanos(maxWaitTime)), false);
+    }
+
+    /**
+     * Upgrades the read lock of the current thread to a write lock, if it is the only reader of the element. (The read locks are kept.)
+     *
+     * @return <code>true</code> in case of a succeeded upgrade, <code>false</code> otherwise
+     * @throws IllegalStateException if the element is not locked for reading by the current thread
+     */
+    public boolean tryUpgrade(T element) {
+        if (!isReadHeldByCurrentThread(element)) {
+            throw new IllegalStateException(String.format("The element '%s' is not locked for reading by the current thread.", element));
+        }
+        return tryLock(element, true);
+    }
+
+    /**
+     * Downgrades the write lock of the current thread to a read lock. (Acquires the read lock and releases the write lock atomically.)
+     *
+     * @throws IllegalStateException if the element is not locked for writing by the current thread
+     */
+    public void downgrade(T element) {
+        ElementLock elementLock = lockElementLock(element);
+        try {
+            Thread currentThread = Thread.currentThread();
+            if (elementLock.writingThread != currentThread) {
+                throw new IllegalStateException(String.format("The element '%s' is not locked for writing by the current thread.", element));
+            }
+            elementLock.grant(currentThread, false);
+            releaseWriteLock(elementLock);
+            LOG.trace("Downgraded: {}", element);
+        } finally {
+            elementLock.removeIfUnused();
+            elementLock.mutex.unlock();
+        }
+    }
+
+    private boolean tryLock(T element, boolean write) {
+        try {
+            return lock(element, write, Optional.empty(), true);
+        } catch (TimeoutException e) {
+            // Must not happen here
+            String msg = "Unexpected timeout exception: " + e.getMessage();
+            LOG.error(msg, e);
+            throw new RuntimeException(msg, e);
+        }
+    }
+
+    private void lockWithoutTimeout(T element, boolean write) {
+        try {
+            lock(element, write, Optional.empty(), false);
+        } catch (TimeoutException e) {
+            // Must not happen here
+            String msg = "Unexpected timeout exception: " + e.getMessage();
+            LOG.error(msg, e);
+            throw new RuntimeException(msg, e);
+        }
+    }
+
+    /**
+     * Locks the given element for the current thread (for writing or reading).<br>
+     * If it cannot be locked, it waits until it is released by the other threads.<br>
+     * If the waiting time (in nanoseconds) exceeds the given one, an {@link TimeoutException} is thrown.<br>
+     * Interruptions do not abort the waiting, but the interrupt status is restored afterwards.
+     */
+    private boolean lock(T element, boolean write, Optional<Long> optionalMaxWaitNanos, boolean tryLock) throws TimeoutException {
+        LOG.trace("Locking for {}: {}", write ? "writing" : "reading", element);
+        ElementLock elementLock = lockElementLock(element);
+        boolean interrupted = false;
+        try {
+            Thread currentThread = Thread.currentThread();
+            if (write && !tryLock && elementLock.writingThread != currentThread && elementLock.readCounts.containsKey(currentThread)
+                    && !elementLock.isOnlyReader(currentThread)) {
+                // Two readers waiting for their upgrade would deadlock each other
+                throw new IllegalStateException(String.format("The element '%s' is locked for reading by the current thread. Use tryUpgrade().", element));
+            }
+            if (!canLock(elementLock, currentThread, write)) {
+                if (tryLock) {
+                    LOG.trace("Element '{}' is already locked", element);
+                    return false;
+                }
+                LOG.trace("Waiting for {} lock of '{}'", write ? "write" : "read", element);
+                long deadline = System.nanoTime() + optionalMaxWaitNanos.orElse(0L);
+                changeWaitingCount(elementLock, write, 1);
+                try {
+                    while (!canLock(elementLock, currentThread, write)) {
+                        if (!optionalMaxWaitNanos.isPresent()) {
+                            elementLock.released.awaitUninterruptibly();
+                            continue;
+                        }
+                        long remainingNanos = deadline - System.nanoTime(); // Computed by the deadline, so interrupts do not restart the waiting time
+                        if (remainingNanos <= 0L) {
+                            if (write) {
+                                elementLock.released.signalAll(); // Readers may wait for us, if writer preference is enabled
+                            }
+                            String msg = String.format("Time (%d ns) exceeded for waiting on locked '%s'", optionalMaxWaitNanos.get(), element);
+                            LOG.debug(msg);
+                            throw new TimeoutException(msg);
+                        }
+                        try {
+                            elementLock.released.awaitNanos(remainingNanos);
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                } finally {
+                    changeWaitingCount(elementLock, write, -1);
+                }
+            }
+            elementLock.grant(currentThread, write);
+            return true;
+        } finally {
+            elementLock.removeIfUnused();
+            elementLock.mutex.unlock();
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private boolean canLock(ElementLock elementLock, Thread thread, boolean write) {
+        return write ? elementLock.canWrite(thread) : elementLock.canRead(thread);
+    }
+
+    private void changeWaitingCount(ElementLock elementLock, boolean write, int delta) {
+        if (write) {
+            elementLock.waitingWriters += delta;
+        } else {
+            elementLock.waitingReaders += delta;
+        }
+    }
+
+    /**
+     * Unlocks the write lock of the given element. (If it is not locked for writing by the current thread, it will not be unlocked. No exception is thrown
+     * in this case, just logging.)
+     * <p>
+     * It is null-safe, because it may be used in finally blocks.
+     */
+    @Override
+    public void unlock(T element) {
+        if (element == null) {
+            return;
+        }
+        LOG.trace("Unlocking write lock: {}", element);
+        ElementLock elementLock = elementLocks.get(element);
+        if (elementLock == null) {
+            LOG.warn("The element '{}' is NOT locked!", element);
+            return;
+        }
+        elementLock.mutex.lock();
+        try {
+            if (elementLock.writingThread != Thread.currentThread()) {
+                LOG.info("The element '{}' is NOT locked for writing by the current thread '{}' -> IGNORED!", element, Thread.currentThread());
+                return;
+            }
+            releaseWriteLock(elementLock);
+        } finally {
+            elementLock.removeIfUnused();
+            elementLock.mutex.unlock();
+        }
+    }
+
+    private void releaseWriteLock(ElementLock elementLock) {
+        if (--elementLock.writeCount == 0L) {
+            elementLock.writingThread = null;
+            elementLock.released.signalAll();
+        }
+    }
+
+    /**
+     * Unlocks the read lock of the given element. (If it is not locked for reading by the current thread, it will not be unlocked. No exception is thrown in
+     * this case, just logging.)
+     * <p>
+     * It is null-safe, because it may be used in finally blocks.
+     */
+    @Override
+    public void unlockRead(T element) {
+        if (element == null) {
+            return;
+        }
+        LOG.trace("Unlocking read lock: {}", element);
+        ElementLock elementLock = elementLocks.get(element);
+        if (elementLock == null) {
+            LOG.warn("The element '{}' is NOT locked!", element);
+            return;
+        }
+        elementLock.mutex.lock();
+        try {
+            Thread currentThread = Thread.currentThread();
+            Long readCount = elementLock.readCounts.get(currentThread);
+            if (readCount == null) {
+                LOG.info("The element '{}' is NOT locked for reading by the current thread '{}' -> IGNORED!", element, currentThread);
+                return;
+            }
+            if (readCount == 1L) {
+                elementLock.readCounts.remove(currentThread);
+                elementLock.readingThreadCount = elementLock.readCounts.size();
+                elementLock.released.signalAll();
+            } else {
+                elementLock.readCounts.put(currentThread, readCount - 1L);
+            }
+        } finally {
+            elementLock.removeIfUnused();
+            elementLock.mutex.unlock();
+        }
+    }
+
+    /**
+     * Returns <code>true</code>, if locked for writing (by another thread).
+     */
+    @Override
+    public boolean isLocked(T element) {
+        Thread thread = getWritingThread(element);
+        return thread != null && thread != Thread.currentThread();
+    }
+
+    /**
+     * Returns <code>true</code>, if locked for reading (by any thread).
+     */
+    @Override
+    public boolean isReadLocked(T element) {
+        ElementLock elementLock = elementLocks.get(element);
+        return elementLock != null && elementLock.readingThreadCount > 0;
+    }
+
+    /**
+     * Return <code>true</code>, if locked for writing by current thread.
+     */
+    public boolean isHeldByCurrentThread(T element) {
+        return getWritingThread(element) == Thread.currentThread();
+    }
+
+    /**
+     * Return <code>true</code>, if locked for reading by current thread.
+     */
+    public boolean isReadHeldByCurrentThread(T element) {
+        ElementLock elementLock = elementLocks.get(element);
+        if (elementLock == null) {
+            return false;
+        }
+        elementLock.mutex.lock();
+        try {
+            return elementLock.readCounts.containsKey(Thread.currentThread());
+        } finally {
+            elementLock.mutex.unlock();
+        }
+    }
+
+    /**
+     * Get currently writing thread.
+     */
+    public Thread getWritingThread(T element) {
+        ElementLock elementLock = elementLocks.get(element);
+        return elementLock != null ? elementLock.writingThread : null;
+    }
+
+    /**
+     * Locks element for writing, then executes given {@link Runnable} and finally unlocks element. (Execute-around-method-pattern.)
+     */
+    public void executeWithLock(T element, Runnable task) {
+        lock(element);
+        try {
+            task.run();
+        } finally {
+            unlock(element);
+        }
+    }
+
+    /**
+     * Locks element for writing, then executes given {@link Supplier}, returns its result and finally unlocks element. (Execute-around-method-pattern.)
+     */
+    public <S> S executeWithLock(T element, Supplier<S> supplier) {
+        lock(element);
+        try {
+            return supplier.get();
+        } finally {
+            unlock(element);
+        }
+    }
+
+    /**
+     * Locks element for reading, then executes given {@link Runnable} and finally unlocks element. (Execute-around-method-pattern.)
+     */
+    public void executeWithReadLock(T element, Runnable task) {
+        readLock(element);
+        try {
+            task.run();
+        } finally {
+            unlockRead(element);
+        }
+    }
+
+    /**
+     * Locks element for reading, then executes given {@link Supplier}, returns its result and finally unlocks element. (Execute-around-method-pattern.)
+     */
+    public <S> S executeWithReadLock(T element, Supplier<S> supplier) {
+        readLock(element);
+        try {
+            return supplier.get();
+        } finally {
+            unlockRead(element);
+        }
+    }
+
+}
@@ -0,0 +1,22 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent;
+
+/**
+ * A {@link LockerI} with shared (read) locks in addition to the exclusive (write) locks of {@link LockerI}.
+ */
+public interface ReadWriteLockerI<T> extends LockerI<T> {
+
+    boolean tryReadLock(T element);
+
+    void readLock(T element);
+
+    void unlockRead(T element);
+
+    boolean isReadLocked(T element);
+}
@@ -1,5 +1,8 @@
 package de.thksystems.util.concurrent;
 
+import java.util.Optional;
+import java.util.concurrent.ThreadFactory;
+
 public class ThreadUtils {
 
     private ThreadUtils() {
@@ -18,4 +21,16 @@ public class ThreadUtils {
         }
     }
 
+    /**
+     * Returns a {@link ThreadFactory} creating virtual threads, if they are supported by the running JVM (Java 21+).
+     */
+    public static Optional<ThreadFactory> getVirtualThreadFactory() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return Optional.of((ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder));
+        } catch (ReflectiveOperationException e) {
+            return Optional.empty();
+        }
+    }
+
 }
@@ -0,0 +1,159 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent;
+
+import static de.thksystems.util.lang.ExceptionUtils.asShortString;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A hashed timer wheel for lots of timeouts with low precision (one tick). Scheduling and cancelling a timeout is O(1).
+ * <p>
+ * All tasks are executed by a single (daemon) worker thread, so they must be short.
+ */
+final class TimerWheel {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TimerWheel.class);
+
+    /**
+     * Maximum count of timeouts moved from the pending queue to the wheel per tick (so the worker does not starve on bursts).
+     */
+    private static final int MAX_TRANSFERS_PER_TICK = 100_000;
+
+    /**
+     * A scheduled task.
+     */
+    static final class Timeout {
+
+        private final Runnable task;
+
+        /**
+         * Deadline in nanoseconds (relative to the start of the wheel).
+         */
+        private final long deadline;
+
+        /**
+         * Count of rounds of the wheel left until the deadline. Only accessed by the worker thread.
+         */
+        private long remainingRounds;
+
+        private volatile boolean cancelled = false;
+
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the timeout. (It is removed from the wheel lazily.)
+         */
+        void cancel() {
+            cancelled = true;
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private final long tickNanos;
+
+    private final Queue<Timeout>[] buckets;
+
+    private final int mask;
+
+    private final Queue<Timeout> pendingTimeouts = new ConcurrentLinkedQueue<>();
+
+    private final long startTime = System.nanoTime();
+
+    /**
+     * Current tick. Only accessed by the worker thread.
+     */
+    private long tick = 0L;
+
+    /**
+     * Creates the wheel and starts its worker thread. The count of buckets is rounded up to a power of two.
+     */
+    @SuppressWarnings("unchecked")
+    TimerWheel(String threadName, long tickDuration, TimeUnit timeUnit, int bucketCount) {
+        this.tickNanos = timeUnit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(Math.max(1, bucketCount - 1)) << 1;
+        this.buckets = new Queue[size];
+        for (int i = 0; i < size; i++) {
+            buckets[i] = new ArrayDeque<>();
+        }
+        this.mask = size - 1;
+        Thread workerThread = new Thread(this::run, threadName);
+        workerThread.setDaemon(true);
+        workerThread.start();
+    }
+
+    /**
+     * Schedules the given task for execution after the given delay.
+     */
+    Timeout schedule(Runnable task, long delay, TimeUnit timeUnit) {
+        Timeout timeout = new Timeout(task, System.nanoTime() - startTime + timeUnit.toNanos(delay));
+        pendingTimeouts.add(timeout);
+        return timeout;
+    }
+
+    private void run() {
+        while (true) {
+            long tickDeadline = tickNanos * (tick + 1);
+            long sleepNanos;
+            while ((sleepNanos = startTime + tickDeadline - System.nanoTime()) > 0L) {
+                LockSupport.parkNanos(this, sleepNanos);
+            }
+            transferPendingTimeouts();
+            expireTimeouts(buckets[(int) (tick & mask)]);
+            tick++;
+        }
+    }
+
+    private void transferPendingTimeouts() {
+        for (int i = 0; i < MAX_TRANSFERS_PER_TICK; i++) {
+            Timeout timeout = pendingTimeouts.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            long deadlineTick = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (deadlineTick - tick) / buckets.length;
+            buckets[(int) (Math.max(deadlineTick, tick) & mask)].add(timeout);
+        }
+    }
+
+    private void expireTimeouts(Queue<Timeout> bucket) {
+        for (Iterator<Timeout> iterator = bucket.iterator(); iterator.hasNext(); ) {
+            Timeout timeout = iterator.next();
+            if (timeout.isCancelled()) {
+                iterator.remove();
+            } else if (timeout.remainingRounds <= 0L) {
+                iterator.remove();
+                try {
+                    timeout.task.run();
+                } catch (Throwable throwable) {
+                    LOG.error("Caught exception while executing timeout task: {}", asShortString(throwable), throwable);
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent.scalingworkerqueue;
+
+import java.math.BigDecimal;
+import java.util.concurrent.locks.ReentrantLock;
+
+import de.thksystems.util.math.ResizableCircularAverage;
+
+/**
+ * Sizes the fetches of the {@link ScalingWorkerQueue} by the measured processing time (per element) and supplier latency (per fetch), both as moving averages.
+ * <p>
+ * The consumption rate is estimated by the count of workers and the processing time. The count of spare elements (the prefetch depth) covers the consumption
+ * during a supplier call (twice, for safety), so the runners do not starve while the dispatcher is fetching. A fetch fills the free workers and the queue up
+ * to twice the spare elements, so the queue does not hold more work than needed (which would get stale).
+ */
+final class AdaptiveFetchSizing {
+
+    private static final double SAFETY_FACTOR = 2.0;
+
+    private final int maxFetchCount;
+
+    /**
+     * Processing times in ms per element.
+     */
+    private final ResizableCircularAverage processingTimes;
+
+    /**
+     * Supplier latencies in ms per fetch.
+     */
+    private final ResizableCircularAverage supplierLatencies;
+
+    private final ReentrantLock mutex = new ReentrantLock();
+
+    private volatile double consumptionRate;
+
+    private volatile int targetSpareElementCount;
+
+    AdaptiveFetchSizing(int windowSize, int maxFetchCount) {
+        this.processingTimes = new ResizableCircularAverage(windowSize);
+        this.supplierLatencies = new ResizableCircularAverage(windowSize);
+        this.maxFetchCount = maxFetchCount;
+    }
+
+    void recordProcessingTime(long nanos, int elementCount) {
+        BigDecimal millisPerElement = BigDecimal.valueOf(nanos / 1_000_000.0 / Math.max(1, elementCount));
+        mutex.lock();
+        try {
+            processingTimes.add(millisPerElement);
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    void recordSupplierLatency(long nanos) {
+        BigDecimal millis = BigDecimal.valueOf(nanos / 1_000_000.0);
+        mutex.lock();
+        try {
+            supplierLatencies.add(millis);
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    /**
+     * Returns the average processing time (in ms) per element (or 0, if not measured yet).
+     */
+    double getAverageProcessingTime() {
+        return average(processingTimes);
+    }
+
+    /**
+     * Returns the average latency (in ms) of the supplier (or 0, if not measured yet).
+     */
+    double getAverageSupplierLatency() {
+        return average(supplierLatencies);
+    }
+
+    private double average(ResizableCircularAverage values) {
+        mutex.lock();
+        try {
+            return values.isEmpty() ? 0.0 : values.average().doubleValue();
+        } finally {
+            mutex.unlock();
+        }
+    }
+
+    /**
+     * Returns the estimated consumption rate (elements per second) of the last update.
+     */
+    double getConsumptionRate() {
+        return consumptionRate;
+    }
+
+    /**
+     * Returns the target count of spare elements of the last update.
+     */
+    int getTargetSpareElementCount() {
+        return targetSpareElementCount;
+    }
+
+    /**
+     * Updates the consumption rate and the target count of spare elements by the current measurements.
+     *
+     * @param workerCount Count of elements processed concurrently
+     * @param minSpareElementCount Lower bound of the spare elements
+     * @return <code>false</code>, if there are no measurements yet (so the fetch is not sized adaptively)
+     */
+    boolean update(int workerCount, int minSpareElementCount) {
+        double processingTime = getAverageProcessingTime();
+        double supplierLatency = getAverageSupplierLatency();
+        mutex.lock();
+        try {
+            if (processingTimes.isEmpty() || supplierLatencies.isEmpty()) {
+                return false;
+            }
+        } finally {
+            mutex.unlock();
+        }
+        double rate = workerCount * 1_000.0 / Math.max(processingTime, 0.001);
+        consumptionRate = rate;
+        long spare = (long) Math.ceil(rate / 1_000.0 * supplierLatency * SAFETY_FACTOR);
+        targetSpareElementCount = (int) Math.min(Math.max(spare, minSpareElementCount), maxFetchCount);
+        return true;
+    }
+
+    /**
+     * Returns the count of elements to fetch, filling the free workers and the queue up to twice the spare elements.
+     */
+    int getFetchCount(int freeWorkerCount, int queueSize) {
+        long fetchCount = (long) freeWorkerCount + 2L * targetSpareElementCount - queueSize;
+        return (int) Math.min(Math.max(fetchCount, 1L), maxFetchCount);
+    }
+
+}
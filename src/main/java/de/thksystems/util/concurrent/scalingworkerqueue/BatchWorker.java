@@ -0,0 +1,28 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent.scalingworkerqueue;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Worker processing several elements at once (e.g. for writing them to a database in one round trip).
+ *
+ * @see ScalingWorkerQueue#withBatchWorker(BatchWorker, int, long)
+ */
+@FunctionalInterface
+public interface BatchWorker<E, C extends WorkerQueueConfiguration> {
+
+    /**
+     * Processes the given elements.
+     *
+     * @return The elements, that could not be processed, with the cause of their failure (empty, if all elements are processed)
+     */
+    Map<E, Throwable> process(List<E> elements, C configuration);
+
+}
@@ -0,0 +1,158 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent.scalingworkerqueue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Default {@link ScalingPolicy}: The count of runners is sized by Little's law (concurrency = arrival rate * service time) by the rates measured between two
+ * decisions, plus the runners needed to drain the queue within a given period, at a target utilization of the runners.
+ * <p>
+ * To avoid oscillation, the runners are scaled up at once, but scaled down only, if the target count is clearly lower (hysteresis), no scaling happened for
+ * a given delay and there is no backlog at the supplier (the last fetch was not full). Then at most a quarter of the runners is stopped at once.
+ * <p>
+ * If the service time rises far beyond its baseline (the lowest measured service time) while the runners are busy, the downstream is considered to be
+ * saturated (more runners only increase the service time), so the runners are scaled down (without hysteresis).
+ * <p>
+ * The policy is stateful, so an instance must not be shared by several queues.
+ */
+public class LittlesLawScalingPolicy implements ScalingPolicy {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LittlesLawScalingPolicy.class);
+
+    /**
+     * Factor the baseline of the service time drifts up per decision (so it follows lasting changes of the downstream).
+     */
+    private static final double BASELINE_DRIFT = 1.01;
+
+    private double targetUtilization = 0.8;
+    private long queueDrainPeriod = 1_000L;
+    private double hysteresis = 0.25;
+    private long scaleDownDelay = 5_000L;
+    private double saturationFactor = 2.0;
+    private long decisionInterval = 500L;
+
+    private ScalingState lastState;
+    private long lastScalingTimestamp;
+    private double baselineServiceTime = 0.0;
+
+    /**
+     * Target utilization (0..1) of the runners. (Default: 0.8)
+     */
+    public LittlesLawScalingPolicy withTargetUtilization(double targetUtilization) {
+        if (targetUtilization <= 0.0 || targetUtilization > 1.0) {
+            throw new IllegalArgumentException("The target utilization must be in (0..1]: " + targetUtilization);
+        }
+        this.targetUtilization = targetUtilization;
+        return this;
+    }
+
+    /**
+     * Period (in ms) the elements of the internal queue should be drained in (in addition to the arriving elements). (Default: 1 s)
+     */
+    public LittlesLawScalingPolicy withQueueDrainPeriod(long queueDrainPeriod) {
+        this.queueDrainPeriod = Math.max(1L, queueDrainPeriod);
+        return this;
+    }
+
+    /**
+     * Relative distance (0..1) the target count of runners must be below the current count for scaling down. (Default: 0.25)
+     */
+    public LittlesLawScalingPolicy withHysteresis(double hysteresis) {
+        this.hysteresis = Math.max(0.0, Math.min(1.0, hysteresis));
+        return this;
+    }
+
+    /**
+     * Minimum period (in ms) after the last scaling before scaling down. (Default: 5 s)
+     */
+    public LittlesLawScalingPolicy withScaleDownDelay(long scaleDownDelay) {
+        this.scaleDownDelay = scaleDownDelay;
+        return this;
+    }
+
+    /**
+     * Factor the service time must exceed its baseline to consider the downstream as saturated. (Default: 2)
+     */
+    public LittlesLawScalingPolicy withSaturationFactor(double saturationFactor) {
+        this.saturationFactor = saturationFactor;
+        return this;
+    }
+
+    /**
+     * Minimum period (in ms) between two decisions, so that the rates can be measured. (Default: 500 ms)
+     */
+    public LittlesLawScalingPolicy withDecisionInterval(long decisionInterval) {
+        this.decisionInterval = decisionInterval;
+        return this;
+    }
+
+    @Override
+    public int getTargetRunnerCount(ScalingState state) {
+        int runnerCount = state.getRunnerCount();
+        long now = state.getTimestamp();
+        if (lastState == null) {
+            lastState = state;
+            lastScalingTimestamp = now;
+            return hasWork(state) ? Math.max(runnerCount, 1) : runnerCount;
+        }
+        long period = now - lastState.getTimestamp();
+        if (period < TimeUnit.MILLISECONDS.toNanos(decisionInterval)) {
+            // Too short for measuring rates (but elements must not wait without any runner)
+            return hasWork(state) ? Math.max(runnerCount, 1) : runnerCount;
+        }
+        long processedCount = state.getProcessedCount() - lastState.getProcessedCount();
+        long processingTime = state.getProcessingTime() - lastState.getProcessingTime();
+        int lastRunnerCount = lastState.getRunnerCount();
+        int lastQueueSize = lastState.getQueueSize();
+        lastState = state;
+
+        int targetRunnerCount;
+        if (processedCount == 0L) {
+            // No element finished: Either all runners are busy with long running elements (or there is no runner), or they are idle
+            targetRunnerCount = hasWork(state) ? runnerCount + 1 : 0;
+        } else {
+            double serviceTime = (double) processingTime / processedCount; // ns per element
+            double throughput = (double) processedCount / period; // elements per ns
+            double arrivalRate = Math.max(0.0, throughput + (double) (state.getQueueSize() - lastQueueSize) / period);
+            double concurrency = arrivalRate * serviceTime + state.getQueueSize() * serviceTime / TimeUnit.MILLISECONDS.toNanos(queueDrainPeriod);
+            targetRunnerCount = (int) Math.ceil(concurrency / targetUtilization);
+
+            baselineServiceTime = baselineServiceTime == 0.0 ? serviceTime : Math.min(serviceTime, baselineServiceTime * BASELINE_DRIFT);
+            double utilization = lastRunnerCount > 0 ? (double) processingTime / period / lastRunnerCount : 0.0;
+            if (serviceTime > baselineServiceTime * saturationFactor && utilization >= targetUtilization && runnerCount > state.getMinRunnerCount()) {
+                LOG.debug("Downstream is saturated (service time: {} ms, baseline: {} ms). Scaling down.", serviceTime / 1_000_000.0, baselineServiceTime / 1_000_000.0);
+                lastScalingTimestamp = now;
+                return runnerCount - getScaleDownStep(runnerCount);
+            }
+        }
+
+        if (targetRunnerCount > runnerCount) {
+            lastScalingTimestamp = now;
+            return targetRunnerCount;
+        }
+        boolean backlog = state.getRequestedCount() > 0 && state.getFetchedCount() >= state.getRequestedCount();
+        if (!backlog && targetRunnerCount < runnerCount * (1.0 - hysteresis) && now - lastScalingTimestamp >= TimeUnit.MILLISECONDS.toNanos(scaleDownDelay)) {
+            lastScalingTimestamp = now;
+            return Math.max(targetRunnerCount, runnerCount - getScaleDownStep(runnerCount));
+        }
+        return runnerCount;
+    }
+
+    private static boolean hasWork(ScalingState state) {
+        return state.getQueueSize() > 0 || state.getElementsInWorkCount() > 0;
+    }
+
+    private static int getScaleDownStep(int runnerCount) {
+        return Math.max(1, runnerCount / 4);
+    }
+
+}
@@ -0,0 +1,24 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent.scalingworkerqueue;
+
+/**
+ * Policy deciding the count of runners of a {@link ScalingWorkerQueue}. It is called by the dispatcher (only) after each fetch.
+ *
+ * @see ScalingWorkerQueue#withScalingPolicy(ScalingPolicy)
+ * @see LittlesLawScalingPolicy
+ */
+@FunctionalInterface
+public interface ScalingPolicy {
+
+    /**
+     * Returns the wanted count of runners for the given state. (It is bounded by the minimum and maximum count of runners by the queue.)
+     */
+    int getTargetRunnerCount(ScalingState state);
+
+}
@@ -0,0 +1,114 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent.scalingworkerqueue;
+
+/**
+ * Immutable state of a {@link ScalingWorkerQueue} given to its {@link ScalingPolicy}. The counts of processed elements and the processing time are
+ * cumulated since the start of the queue, so a policy can compute rates by the differences of two states.
+ */
+public final class ScalingState {
+
+    private final long timestamp;
+
+    private final int runnerCount;
+
+    private final int minRunnerCount;
+
+    private final int maxRunnerCount;
+
+    private final int queueSize;
+
+    private final int elementsInWorkCount;
+
+    private final int requestedCount;
+
+    private final int fetchedCount;
+
+    private final long processedCount;
+
+    private final long processingTime;
+
+    ScalingState(long timestamp, int runnerCount, int minRunnerCount, int maxRunnerCount, int queueSize, int elementsInWorkCount, int requestedCount,
+            int fetchedCount, long processedCount, long processingTime) {
+        this.timestamp = timestamp;
+        this.runnerCount = runnerCount;
+        this.minRunnerCount = minRunnerCount;
+        this.maxRunnerCount = maxRunnerCount;
+        this.queueSize = queueSize;
+        this.elementsInWorkCount = elementsInWorkCount;
+        this.requestedCount = requestedCount;
+        this.fetchedCount = fetchedCount;
+        this.processedCount = processedCount;
+        this.processingTime = processingTime;
+    }
+
+    /**
+     * Returns the timestamp (in ns, see {@link System#nanoTime()}) of the state.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getRunnerCount() {
+        return runnerCount;
+    }
+
+    public int getMinRunnerCount() {
+        return minRunnerCount;
+    }
+
+    public int getMaxRunnerCount() {
+        return maxRunnerCount;
+    }
+
+    /**
+     * Returns the count of elements in the internal queue (waiting for a runner).
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public int getElementsInWorkCount() {
+        return elementsInWorkCount;
+    }
+
+    /**
+     * Returns the (maximum) count of elements requested by the last fetch.
+     */
+    public int getRequestedCount() {
+        return requestedCount;
+    }
+
+    /**
+     * Returns the count of elements returned by the last fetch. If it is the requested count, there may be more elements to fetch (a backlog).
+     */
+    public int getFetchedCount() {
+        return fetchedCount;
+    }
+
+    /**
+     * Returns the count of processed elements, the worker was called for (since the start).
+     */
+    public long getProcessedCount() {
+        return processedCount;
+    }
+
+    /**
+     * Returns the time (in ns) spent by all runners for processing elements (since the start).
+     */
+    public long getProcessingTime() {
+        return processingTime;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("runners=%d [%d..%d], queueSize=%d, inWork=%d, fetched=%d/%d, processed=%d", runnerCount, minRunnerCount, maxRunnerCount, queueSize,
+                elementsInWorkCount, fetchedCount, requestedCount, processedCount);
+    }
+
+}
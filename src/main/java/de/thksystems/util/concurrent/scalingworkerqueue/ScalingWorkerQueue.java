@@ -10,29 +10,42 @@ package de.thksystems.util.concurrent.scalingworkerqueue;
 
 import static de.thksystems.util.lang.ExceptionUtils.asShortString;
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
+import javax.management.JMException;
+import javax.management.ObjectName;
+
 import org.apache.commons.lang3.concurrent.BasicThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import de.thksystems.util.concurrent.Consumers;
+import de.thksystems.util.concurrent.LatencyHistogram;
+import de.thksystems.util.concurrent.LockerI;
 import de.thksystems.util.concurrent.ThreadUtils;
 
 /**
@@ -48,7 +61,7 @@ import de.thksystems.util.concurrent.ThreadUtils;
 public class ScalingWorkerQueue<E, C extends WorkerQueueConfiguration> {
 
     public enum ListenerEvent {
-        ADDED_TO_QUEUE, REMOVED_FROM_QUEUE
+        ADDED_TO_QUEUE, REMOVED_FROM_QUEUE, PROCESSING_FAILED
     }
 
     private enum Status {
@@ -59,12 +72,19 @@ public class ScalingWorkerQueue<E, C extends WorkerQueueConfiguration> {
 
     private static final long WAIT_FOR_STATUS_PERIOD = 10L;
 
+    private static final String MBEAN_DOMAIN = "de.thksystems.util.concurrent";
+
     private long dispatcherThreadId;
     private Status status = Status.CREATED;
+    private long startTime;
 
     private final Function<Integer, Collection<E>> supplier;
     private final BiConsumer<E, C> worker;
 
+    private BatchWorker<E, C> batchWorker;
+    private int maxBatchSize = 1;
+    private long maxBatchLingerPeriod = 0L;
+
     private final C configuration;
 
     private ThreadFactory threadFactory = new BasicThreadFactory.Builder()
@@ -87,7 +107,47 @@ public class ScalingWorkerQueue<E, C extends WorkerQueueConfiguration> {
 
     private Queue<E> internalQueue;
     private final Set<E> elementsInWork = ConcurrentHashMap.newKeySet();
-    private final List<Runner> runners = new ArrayList<>();
+    /**
+     * Elements in the internal queue or in work (for detecting duplicates in O(1)) with the time (in ns) they were added to the queue. Elements must implement
+     * {@link Object#hashCode()} consistently with {@link Object#equals(Object)}.
+     */
+    private final Map<E, Long> knownElements = new ConcurrentHashMap<>();
+
+    /**
+     * Guards adding elements to the internal queue and taking them out (into the elements in work).
+     */
+    private final ReentrantLock queueLock = new ReentrantLock();
+    /**
+     * Signalled, if elements are added to the internal queue (or the queue should stop). Runners wait for it.
+     */
+    private final Condition elementsAdded = queueLock.newCondition();
+    /**
+     * Signalled, if the size of the internal queue falls below the count of spare elements (or the queue should stop). The dispatcher waits for it.
+     */
+    private final Condition elementsRequired = queueLock.newCondition();
+    private volatile int spareElementCount;
+    private volatile int targetFetchCount;
+
+    private AdaptiveFetchSizing adaptiveFetchSizing;
+
+    private ScalingPolicy scalingPolicy;
+    /**
+     * Count of runners to be stopped (as decided by the scaling policy).
+     */
+    private final AtomicInteger runnersToStop = new AtomicInteger();
+    private final LongAdder processedCount = new LongAdder();
+    private final LongAdder processingTime = new LongAdder();
+
+    private volatile Statistics statistics;
+    private volatile ObjectName mbeanName;
+    private final List<Runnable> runners = new CopyOnWriteArrayList<>(); // Runners are started by the dispatcher and removed by themselves
+
+    /**
+     * Thread factory for the per-element threads (see {@link #withThreadPerElement(ThreadFactory, int)}). If set, no runners are scaled.
+     */
+    private ThreadFactory elementThreadFactory;
+    private int maxConcurrentElements;
+    private Semaphore elementPermits;
 
     public ScalingWorkerQueue(C configuration, Function<Integer, Collection<E>> supplier, BiConsumer<E, C> worker) {
         this.worker = worker;
@@ -128,6 +188,13 @@ public class ScalingWorkerQueue<E, C extends WorkerQueueConfiguration> {
         return this;
     }
 
+    /**
+     * Distributed setup using the given {@link LockerI} (e.g. a {@link de.thksystems.util.concurrent.FileLocker} for several processes on the same host).
+     */
+    public ScalingWorkerQueue<E, C> withDistributedSetup(LockerI<E> locker, Function<E, Boolean> integrityCheckFunction) {
+        return withDistributedSetup(locker::tryLock, locker::unlock, integrityCheckFunction);
+    }
+
     public ScalingWorkerQueue<E, C> withThreadNames(Function<Thread, String> dispatcherThreadNameSupplier, BiFunction<Thread, Integer, String> workerThreadNameSupplier) {
         assertStatusCreated();
         this.dispatcherThreadNameSupplier = dispatcherThreadNameSupplier;
@@ -141,6 +208,155 @@ public class ScalingWorkerQueue<E, C extends WorkerQueueConfiguration> {
         return this;
     }
 
+    /**
+     * Processes each element in its own thread, using virtual threads if supported by the JVM (Java 21+), otherwise the thread factory of the queue.
+     *
+     * @see #withThreadPerElement(ThreadFactory, int)
+     */
+    public ScalingWorkerQueue<E, C> withThreadPerElement(int maxConcurrentElements) {
+        return withThreadPerElement(ThreadUtils.getVirtualThreadFactory().orElse(null), maxConcurrentElements);
+    }
+
+    /**
+     * Processes each element in its own thread created by the given factory (e.g. for virtual threads), instead of scaling runners. This fits workers doing
+     * blocking I/O, because thousands of elements can be in work without a platform thread for each.
+     * <p>
+     * The count of elements processed concurrently is limited by a semaphore with the given count of permits. The settings of the configuration regarding
+     * runners (count of runners, elements per runner, idle periods) are not used, except {@link WorkerQueueConfiguration#getRunnerSleepIdlePeriod()}. With a
+     * {@link BatchWorker}, each batch is processed in its own thread (and the permits limit the count of concurrent batches).
+     *
+     * @param elementThreadFactory If <code>null</code>, the thread factory of the queue is used.
+     */
+    public ScalingWorkerQueue<E, C> withThreadPerElement(ThreadFactory elementThreadFactory, int maxConcurrentElements) {
+        assertStatusCreated();
+        if (maxConcurrentElements < 1) {
+            throw new IllegalArgumentException("The count of concurrent elements must be positive: " + maxConcurrentElements);
+        }
+        this.elementThreadFactory = elementThreadFactory != null ? elementThreadFactory : threadFactory;
+        this.maxConcurrentElements = maxConcurrentElements;
+        return this;
+    }
+
+    /**
+     * Processes the elements in batches by the given {@link BatchWorker} (instead of the worker given to the constructor).
+     * <p>
+     * A runner takes up to the given count of elements from the internal queue. After the first element, it waits up to the given linger period (in ms) for
+     * more elements to fill the batch. The elements of a batch are locked (by the functions of the distributed setup) before and unlocked after the batch is
+     * processed. Elements failed by the batch worker are logged and reported to the listener of {@link ListenerEvent#PROCESSING_FAILED}.
+     * <p>
+     * The count of elements per runner and the count of spare elements (of the configuration) are raised to the batch size, if they are lower.
+     */
+    public ScalingWorkerQueue<E, C> withBatchWorker(BatchWorker<E, C> batchWorker, int maxBatchSize, long maxBatchLingerPeriod) {
+        assertStatusCreated();
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be positive: " + maxBatchSize);
+        }
+        this.batchWorker = batchWorker;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchLingerPeriod = Math.max(0L, maxBatchLingerPeriod);
+        return this;
+    }
+
+    /**
+     * Sizes the fetches adaptively (instead of by the count of runners and the fixed counts of the configuration): The processing time per element and the
+     * latency of the supplier are measured (as moving averages over the given count of values). The count of spare elements is sized to cover the consumption
+     * during a supplier call, so the runners do not starve. A fetch fills the free runners and the queue up to twice the spare elements, so the queue does
+     * not hold stale work.
+     * <p>
+     * Until the first measurements are available, the fetches are sized by the configuration.
+     *
+     * @param maxFetchCount Upper bound of the count of elements to fetch (and of the spare elements)
+     */
+    public ScalingWorkerQueue<E, C> withAdaptiveFetchSize(int windowSize, int maxFetchCount) {
+        assertStatusCreated();
+        if (windowSize < 1 || maxFetchCount < 1) {
+            throw new IllegalArgumentException("The window size and the maximum fetch count must be positive: " + windowSize + ", " + maxFetchCount);
+        }
+        this.adaptiveFetchSizing = new AdaptiveFetchSizing(windowSize, maxFetchCount);
+        return this;
+    }
+
+    /**
+     * Scales the runners by the {@link LittlesLawScalingPolicy} (with its default settings).
+     *
+     * @see #withScalingPolicy(ScalingPolicy)
+     */
+    public ScalingWorkerQueue<E, C> withScalingPolicy() {
+        return withScalingPolicy(new LittlesLawScalingPolicy());
+    }
+
+    /**
+     * Scales the runners by the given policy (instead of by the count of fetched elements only). After each fetch, the policy decides the count of runners
+     * (within the minimum and maximum count of the configuration). Runners are started or stopped (after processing their current element) accordingly. Idle
+     * runners are still stopped after {@link WorkerQueueConfiguration#getRunnerMaxIdlePeriod()}.
+     * <p>
+     * The policy is not used with a thread per element (see {@link #withThreadPerElement(ThreadFactory, int)}).
+     */
+    public ScalingWorkerQueue<E, C> withScalingPolicy(ScalingPolicy scalingPolicy) {
+        assertStatusCreated();
+        this.scalingPolicy = scalingPolicy;
+        return this;
+    }
+
+    /**
+     * Enables the collection of metrics (see {@link #getMetrics()}). The overhead is low (some {@link LongAdder} increments per element), but not zero, so
+     * it is disabled by default.
+     */
+    public ScalingWorkerQueue<E, C> withMetrics() {
+        assertStatusCreated();
+        if (statistics == null) {
+            statistics = new Statistics();
+        }
+        return this;
+    }
+
+    /**
+     * Enables the collection of metrics and registers them as MBean (see {@link WorkerQueueMXBean}) at the platform MBean server using the given name.
+     */
+    public ScalingWorkerQueue<E, C> registerMBean(String name) {
+        withMetrics();
+        try {
+            ObjectName objectName = new ObjectName(MBEAN_DOMAIN + ":type=ScalingWorkerQueue,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new WorkerQueueMXBeanImpl(), objectName);
+            mbeanName = objectName;
+        } catch (JMException e) {
+            String msg = String.format("Registering MBean '%s' failed: %s", name, e.getMessage());
+            LOG.error(msg, e);
+            throw new RuntimeException(msg, e);
+        }
+        return this;
+    }
+
+    /**
+     * Unregisters the MBean registered by {@link #registerMBean(String)} (if any).
+     */
+    public void unregisterMBean() {
+        if (mbeanName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+        } catch (JMException e) {
+            LOG.warn("Unregistering MBean '{}' failed: {}", mbeanName, e.getMessage());
+        }
+        mbeanName = null;
+    }
+
+    /**
+     * Returns a snapshot of the metrics.
+     *
+     * @throws IllegalStateException if metrics are not enabled (see {@link #withMetrics()})
+     */
+    public WorkerQueueMetrics getMetrics() {
+        Statistics currentStatistics = statistics;
+        if (currentStatistics == null) {
+            throw new IllegalStateException("Metrics are not enabled.");
+        }
+        return new WorkerQueueMetrics(currentStatistics.fetchedCount.sum(), currentStatistics.addedCount.sum(), currentStatistics.skippedCount.sum(),
+                processedCount.sum(), currentStatistics.failedCount.sum(), getQueueSize(), getElementsInWorkCount(), getRunnersCount(), getBusyRatio(),
+                currentStatistics.timeInQueue.snapshot(), currentStatistics.processingTime.snapshot(), currentStatistics.supplierLatency.snapshot());
+    }
+
     public ScalingWorkerQueue<E, C> withEventListener(ListenerEvent listenerEvent, BiConsumer<Long, E> listener) {
         assertStatusCreated();
         eventListenerMap.put(listenerEvent, listener);
@@ -187,6 +403,7 @@ public class ScalingWorkerQueue<E, C extends WorkerQueueConfiguration> {
     public ScalingWorkerQueue stop(boolean waitForStop) {
         LOG.info("Requesting stop of worker queue");
         status = Status.STOP_TRIGGERED;
+        signalAll();
         while (waitForStop && !isStopped()) {
             ThreadUtils.sleepWithoutException(WAIT_FOR_STATUS_PERIOD);
         }
@@ -197,6 +414,19 @@ public class ScalingWorkerQueue<E, C extends WorkerQueueConfiguration> {
         return status == Status.STOP_TRIGGERED;
     }
 
+    /**
+     * Wakes up the dispatcher and all waiting runners.
+     */
+    private void signalAll() {
+        queueLock.lock();
+        try {
+            elementsAdded.signalAll();
+            elementsRequired.signalAll();
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
     public boolean isStopped() {
         return status == Status.STOPPED;
     }
@@ -205,13 +435,15 @@ public class ScalingWorkerQueue<E, C extends WorkerQueueConfiguration> {
         String oldThreadName = Thread.currentThread().getName();
         try {
             dispatcherThreadId = Thread.currentThread().getId();
+            startTime = System.nanoTime();
             Thread.currentThread().setName(dispatcherThreadNameSupplier.apply(Thread.currentThread()));
             LOG.info("Worker queue started");
             status = Status.STARTED;
 
             int minElementsCountToSupply = configuration.getMinElementsCountToSupply();
-            int spareElementCount = configuration.getSpareElementsCountToSupply();
-            int elementsPerRunner = configuration.getCountOfElementsPerRunner();
+            int configuredSpareElementCount = Math.max(configuration.getSpareElementsCountToSupply(), maxBatchSize);
+            spareElementCount = configuredSpareElementCount;
+            int elementsPerRunner = Math.max(configuration.getCountOfElementsPerRunner(), maxBatchSize);
             int maxRunner = configuration.getMaxRunnerCount();
             int minRunner = configuration.getMinRunnerCount();
             long dispatcherWaitPeriodOnEmptyFetch = configuration.getDispatcherWaitPeriodOnEmptyFetch();
@@ -228,15 +460,46 @@ public class ScalingWorkerQueue<E, C extends WorkerQueueConfiguration> {
                 internalQueue = new ConcurrentLinkedQueue<>();
             }
 
+            // With a thread per element, a single spawner takes the elements from the queue (instead of the scaled runners)
+            if (elementThreadFactory != null) {
+                elementPermits = new Semaphore(maxConcurrentElements);
+                ElementSpawner spawner = new ElementSpawner();
+                runners.add(spawner);
+                threadFactory.newThread(spawner).start();
+            }
+
             Long idleWaitUntil;
             long addedCount;
 
             while (!shouldStop()) {
                 try {
                     // Get elements by supplying function
-                    int maxFetchCount = Math.max(minElementsCountToSupply, elementsPerRunner * runners.size() + spareElementCount);
+                    int maxFetchCount;
+                    int workerCount = elementPermits != null ? maxConcurrentElements : Math.max(1, runners.size());
+                    if (adaptiveFetchSizing != null && adaptiveFetchSizing.update(workerCount, maxBatchSize)) {
+                        int workerCapacity = elementPermits != null
+                                ? maxConcurrentElements * maxBatchSize
+                                : elementsPerRunner * Math.min(maxRunner, runners.size() + 1); // Allow scaling up by one runner
+                        spareElementCount = adaptiveFetchSizing.getTargetSpareElementCount();
+                        maxFetchCount = adaptiveFetchSizing.getFetchCount(Math.max(0, workerCapacity - elementsInWork.size()), internalQueue.size());
+                    } else {
+                        spareElementCount = configuredSpareElementCount;
+                        maxFetchCount = elementPermits != null
+                                ? Math.max(minElementsCountToSupply, elementPermits.availablePermits() * maxBatchSize + spareElementCount)
+                                : Math.max(minElementsCountToSupply, elementsPerRunner * runners.size() + spareElementCount);
+                    }
+                    targetFetchCount = maxFetchCount;
                     LOG.trace("Fetching additional elements (max: {})", maxFetchCount);
+                    long fetchStartTime = System.nanoTime();
                     Collection<E> elements = supplier.apply(maxFetchCount);
+                    long supplierLatency = System.nanoTime() - fetchStartTime;
+                    if (adaptiveFetchSizing != null) {
+                        adaptiveFetchSizing.recordSupplierLatency(supplierLatency);
+                    }
+                    if (statistics != null) {
+                        statistics.supplierLatency.record(supplierLatency);
+                        statistics.fetchedCount.add(elements.size());
+                    }
                     if (!elements.isEmpty()) {
                         LOG.debug("Fetched {} (of max {}) additional elements", elements.size(), maxFetchCount);
                         if (elements.size() > maxFetchCount) {
@@ -249,18 +512,30 @@ public class ScalingWorkerQueue<E, C extends WorkerQueueConfiguration> {
                     idleWaitUntil = null;
                     addedCount = 0L;
 
-                    // Add only fetched elements, that are not already in the queue
+                    // Add only fetched elements, that are not already in the queue or in work
                     // This does not break concurrency, because this is the only place and thread, elements are added to the queue.
-                    // (This does not have a good performance for larger queues, but we should not have them.)
-                    for (E element : elements) {
-                        if (!internalQueue.contains(element) && !elementsInWork.contains(element)) {
-                            LOG.trace("Adding fetched element to internal queue: {}", toStringFunction.apply(element));
-                            internalQueue.add(element);
-                            executeEventListener(ListenerEvent.ADDED_TO_QUEUE, element);
-                            addedCount++;
-                        } else {
-                            LOG.debug("Skipping fetched element. It is already in the internal queue or currently processed: {}", toStringFunction.apply(element));
+                    queueLock.lock();
+                    try {
+                        long addedTime = System.nanoTime();
+                        for (E element : elements) {
+                            if (knownElements.putIfAbsent(element, addedTime) == null) {
+                                LOG.trace("Adding fetched element to internal queue: {}", toStringFunction.apply(element));
+                                internalQueue.add(element);
+                                executeEventListener(ListenerEvent.ADDED_TO_QUEUE, element);
+                                addedCount++;
+                            } else {
+                                LOG.debug("Skipping fetched element. It is already in the internal queue or currently processed: {}", toStringFunction.apply(element));
+                            }
+                        }
+                        if (statistics != null) {
+                            statistics.addedCount.add(addedCount);
+                            statistics.skippedCount.add(elements.size() - addedCount);
+                        }
+                        if (addedCount > 0) {
+                            elementsAdded.signalAll();
                         }
+                    } finally {
+                        queueLock.unlock();
                     }
                     // If no (new) elements are added to the internal queue, we sleep some time ...
                     if (addedCount == 0) {
@@ -269,21 +544,32 @@ public class ScalingWorkerQueue<E, C extends WorkerQueueConfiguration> {
                     }
 
                     // Create runner/worker threads, if needed
-                    while (!shouldStop() && runners.size() < Math.min(maxRunner, (double) elements.size() / elementsPerRunner)) {
-                        Runner runner = new Runner(runners.size(), runners.size() >= minRunner);
-                        runners.add(runner);
-                        threadFactory.newThread(runner).start();
+                    if (scalingPolicy != null && elementPermits == null) {
+                        scaleRunners(maxFetchCount, elements.size(), minRunner, maxRunner);
+                    } else {
+                        while (!shouldStop() && elementPermits == null && runners.size() < Math.min(maxRunner, (double) elements.size() / elementsPerRunner)) {
+                            startRunner(minRunner);
+                        }
                     }
 
-                    // Wait until the size of the internal queue falls below a given limit.
-                    while (!shouldStop()
-                            && ((internalQueue.size() >= spareElementCount && idleWaitUntil == null)
-                            || (idleWaitUntil != null && System.currentTimeMillis() < idleWaitUntil))) {
-                        try {
-                            Thread.sleep(sleepPeriod);
-                        } catch (InterruptedException e) {
-                            throw new UnsupportedOperationException("The scaling worker queue must not interrupted. Use stop() instead.", e);
+                    // Wait until the size of the internal queue falls below a given limit (signalled by the runners).
+                    queueLock.lock();
+                    try {
+                        while (!shouldStop()
+                                && ((internalQueue.size() >= spareElementCount && idleWaitUntil == null)
+                                || (idleWaitUntil != null && System.currentTimeMillis() < idleWaitUntil))) {
+                            try {
+                                if (idleWaitUntil != null) {
+                                    elementsRequired.await(idleWaitUntil - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+                                } else {
+                                    elementsRequired.await();
+                                }
+                            } catch (InterruptedException e) {
+                                throw new UnsupportedOperationException("The scaling worker queue must not interrupted. Use stop() instead.", e);
+                            }
                         }
+                    } finally {
+                        queueLock.unlock();
                     }
                 } catch (Exception e) {
                     LOG.error("Caught exception in dispatcher: {} -> Sleeping some time ({} ms)", asShortString(e), sleepPeriodCountOnError * sleepPeriod, e);
@@ -303,13 +589,91 @@ public class ScalingWorkerQueue<E, C extends WorkerQueueConfiguration> {
         }
     }
 
-    synchronized Optional<E> getNextElement() {
-        E element = internalQueue.peek();
-        if (element != null) {
-            elementsInWork.add(element);
-            internalQueue.remove();
+    /**
+     * Starts or stops runners as decided by the scaling policy.
+     */
+    private void scaleRunners(int requestedCount, int fetchedCount, int minRunner, int maxRunner) {
+        int runnerCount = runners.size();
+        ScalingState state = new ScalingState(System.nanoTime(), runnerCount, minRunner, maxRunner, internalQueue.size(), elementsInWork.size(), requestedCount,
+                fetchedCount, processedCount.sum(), processingTime.sum());
+        int targetRunnerCount = Math.max(minRunner, Math.min(maxRunner, scalingPolicy.getTargetRunnerCount(state)));
+        if (targetRunnerCount != runnerCount) {
+            LOG.debug("Scaling runners from {} to {} ({})", runnerCount, targetRunnerCount, state);
+        }
+        runnersToStop.set(Math.max(0, runnerCount - targetRunnerCount));
+        while (!shouldStop() && runners.size() < targetRunnerCount) {
+            startRunner(minRunner);
+        }
+    }
+
+    private void startRunner(int minRunner) {
+        Runner runner = new Runner(runners.size(), runners.size() >= minRunner);
+        runners.add(runner);
+        threadFactory.newThread(runner).start();
+    }
+
+    /**
+     * Returns <code>true</code>, if a runner should be stopped (as decided by the scaling policy). Then the count of runners to stop is decremented.
+     */
+    boolean shouldStopRunner() {
+        return runnersToStop.getAndUpdate(count -> count > 0 ? count - 1 : 0) > 0;
+    }
+
+    /**
+     * Takes the next elements (one or a batch) of the internal queue (and marks them as in work). If the queue is empty, it waits up to the given period (in
+     * ms) for added elements. After the first element of a batch, it waits up to the linger period for more elements.
+     */
+    List<E> getNextElements(long maxWaitPeriod) throws InterruptedException {
+        queueLock.lock();
+        try {
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitPeriod);
+            while (internalQueue.isEmpty() && !shouldStop() && remainingNanos > 0L) {
+                remainingNanos = elementsAdded.awaitNanos(remainingNanos);
+            }
+            if (internalQueue.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<E> elements = new ArrayList<>(Math.min(maxBatchSize, internalQueue.size()));
+            long lingerNanos = TimeUnit.MILLISECONDS.toNanos(maxBatchLingerPeriod);
+            while (elements.size() < maxBatchSize) {
+                E element = internalQueue.poll();
+                if (element != null) {
+                    elementsInWork.add(element);
+                    elements.add(element);
+                    recordTimeInQueue(element);
+                } else {
+                    if (internalQueue.size() < spareElementCount) {
+                        elementsRequired.signal();
+                    }
+                    if (shouldStop() || lingerNanos <= 0L) {
+                        break;
+                    }
+                    lingerNanos = elementsAdded.awaitNanos(lingerNanos);
+                }
+            }
+            if (internalQueue.size() < spareElementCount) {
+                elementsRequired.signal();
+            }
+            return elements;
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    private void recordTimeInQueue(E element) {
+        Statistics currentStatistics = statistics;
+        Long addedTime = knownElements.get(element);
+        if (currentStatistics != null && addedTime != null) {
+            currentStatistics.timeInQueue.record(System.nanoTime() - addedTime);
+        }
+    }
+
+    private void logNextElements(List<E> elements) {
+        if (elements.size() == 1) {
+            LOG.info("Got next element: {}", toStringFunction.apply(elements.get(0)));
+        } else {
+            LOG.info("Got next {} elements", elements.size());
         }
-        return Optional.ofNullable(element);
     }
 
     boolean hasNextElement() {
@@ -319,22 +683,210 @@ public class ScalingWorkerQueue<E, C extends WorkerQueueConfiguration> {
     void markElementAsProcessed(E element) {
         if (element != null) {
             elementsInWork.remove(element);
+            knownElements.remove(element);
             executeEventListener(ListenerEvent.REMOVED_FROM_QUEUE, element);
         }
     }
 
-    void removeRunner(Runner runner) {
+    /**
+     * Processes the given elements (by the batch worker or the worker) and marks them as processed. Only the elements, the (batch) worker was called for, are
+     * counted as processed.
+     */
+    void processElements(List<E> elements) {
+        long startTime = System.nanoTime();
+        int workedCount = 0;
+        if (batchWorker != null) {
+            workedCount = processBatch(elements);
+        } else {
+            for (E element : elements) {
+                if (processElement(element)) {
+                    workedCount++;
+                }
+            }
+        }
+        long duration = System.nanoTime() - startTime;
+        processedCount.add(workedCount);
+        processingTime.add(duration);
+        if (statistics != null) {
+            statistics.processingTime.record(duration);
+        }
+        if (adaptiveFetchSizing != null && workedCount > 0) {
+            adaptiveFetchSizing.recordProcessingTime(duration, workedCount);
+        }
+    }
+
+    /**
+     * Processes the given element (if it can be locked and passes the integrity check) and marks it as processed.
+     *
+     * @return true, if the worker was called for the element (even if it failed)
+     */
+    private boolean processElement(E element) {
+        try {
+            if (trylockFunction.apply(element) && integrityCheckFunction.apply(element)) {
+                try {
+                    worker.accept(element, configuration);
+                } catch (Throwable throwable) {
+                    LOG.error("Caught exception while processing element '{}': {}", toStringFunction.apply(element), asShortString(throwable), throwable);
+                    onProcessingFailed(element);
+                } finally {
+                    unlockFunction.accept(element);
+                }
+                return true;
+            }
+            return false;
+        } finally {
+            markElementAsProcessed(element);
+        }
+    }
+
+    /**
+     * Processes the elements (that can be locked and pass the integrity check) by the batch worker and marks them as processed. The locked elements are
+     * unlocked after the whole batch is processed.
+     *
+     * @return count of elements, the batch worker was called for (even if they failed)
+     */
+    private int processBatch(List<E> elements) {
+        List<E> lockedElements = new ArrayList<>(elements.size());
+        try {
+            List<E> batch = new ArrayList<>(elements.size());
+            for (E element : elements) {
+                if (trylockFunction.apply(element)) {
+                    lockedElements.add(element);
+                    if (integrityCheckFunction.apply(element)) {
+                        batch.add(element);
+                    }
+                }
+            }
+            if (!batch.isEmpty()) {
+                Map<E, Throwable> failures;
+                try {
+                    failures = batchWorker.process(Collections.unmodifiableList(batch), configuration);
+                } catch (Throwable throwable) {
+                    LOG.error("Caught exception while processing batch of {} elements: {}", batch.size(), asShortString(throwable), throwable);
+                    failures = new HashMap<>();
+                    for (E element : batch) {
+                        failures.put(element, throwable);
+                    }
+                }
+                if (failures != null) {
+                    failures.forEach((element, throwable) -> {
+                        LOG.error("Processing of element '{}' failed: {}", toStringFunction.apply(element), asShortString(throwable), throwable);
+                        onProcessingFailed(element);
+                    });
+                }
+            }
+            return batch.size();
+        } finally {
+            lockedElements.forEach(unlockFunction);
+            elements.forEach(this::markElementAsProcessed);
+        }
+    }
+
+    private void onProcessingFailed(E element) {
+        if (statistics != null) {
+            statistics.failedCount.increment();
+        }
+        executeEventListener(ListenerEvent.PROCESSING_FAILED, element);
+    }
+
+    void removeRunner(Runnable runner) {
         runners.remove(runner);
     }
 
+    /**
+     * Returns the count of runners. (With a thread per element, this is the spawner of the element threads only.)
+     */
     public int getRunnersCount() {
         return runners.size();
     }
 
+    /**
+     * Returns the (maximum) count of elements of the last fetch.
+     */
+    public int getTargetFetchCount() {
+        return targetFetchCount;
+    }
+
+    /**
+     * Returns the current count of spare elements: If the internal queue holds less elements, more elements are fetched.
+     */
+    public int getTargetSpareElementCount() {
+        return spareElementCount;
+    }
+
+    /**
+     * Returns the measured average processing time (in ms) per element. (Only measured with adaptive fetch size, otherwise 0.)
+     *
+     * @see #withAdaptiveFetchSize(int, int)
+     */
+    public double getAverageProcessingTime() {
+        return adaptiveFetchSizing != null ? adaptiveFetchSizing.getAverageProcessingTime() : 0.0;
+    }
+
+    /**
+     * Returns the measured average latency (in ms) of the supplier. (Only measured with adaptive fetch size, otherwise 0.)
+     *
+     * @see #withAdaptiveFetchSize(int, int)
+     */
+    public double getAverageSupplierLatency() {
+        return adaptiveFetchSizing != null ? adaptiveFetchSizing.getAverageSupplierLatency() : 0.0;
+    }
+
+    /**
+     * Returns the estimated consumption rate (elements per second) by the count of workers and the measured processing time. (Only estimated with adaptive
+     * fetch size, otherwise 0.)
+     *
+     * @see #withAdaptiveFetchSize(int, int)
+     */
+    public double getEstimatedConsumptionRate() {
+        return adaptiveFetchSizing != null ? adaptiveFetchSizing.getConsumptionRate() : 0.0;
+    }
+
+    /**
+     * Returns the count of elements in the internal queue.
+     */
+    public int getQueueSize() {
+        Queue<E> queue = internalQueue;
+        return queue != null ? queue.size() : 0;
+    }
+
+    /**
+     * Returns the ratio (0..1) of the time the runners (or the permits of the element threads) are busy with processing (since the start). Needs metrics
+     * (see {@link #withMetrics()}), otherwise 0.
+     */
+    public double getBusyRatio() {
+        Statistics currentStatistics = statistics;
+        if (currentStatistics == null || startTime == 0L) {
+            return 0.0;
+        }
+        long now = System.nanoTime();
+        long availableTime;
+        if (elementPermits != null) {
+            availableTime = maxConcurrentElements * (now - startTime);
+        } else {
+            availableTime = currentStatistics.finishedRunnerTime.sum();
+            for (Runnable runner : runners) {
+                if (runner instanceof ScalingWorkerQueue<?, ?>.Runner) {
+                    availableTime += now - ((ScalingWorkerQueue<?, ?>.Runner) runner).startTime;
+                }
+            }
+        }
+        return availableTime > 0L ? Math.min(1.0, (double) processingTime.sum() / availableTime) : 0.0;
+    }
+
+    /**
+     * Returns the count of elements currently in work.
+     */
+    public int getElementsInWorkCount() {
+        return elementsInWork.size();
+    }
+
     private class Runner implements Runnable {
         private final int number;
         private final boolean canDieIfIdle;
 
+        private final long startTime = System.nanoTime();
+
         private Long noResultStartTime = null;
 
         Runner(int number, boolean canDieIfIdle) {
@@ -349,30 +901,27 @@ public class ScalingWorkerQueue<E, C extends WorkerQueueConfiguration> {
                 Thread.currentThread().setName(workerThreadNameSupplier.apply(Thread.currentThread(), number));
                 LOG.info("Additional runner started: {} (mandatory: {})", number, !canDieIfIdle);
 
-                long sleepPeriod = configuration.getSleepPeriod();
                 long runnerMaxIdlePeriod = configuration.getRunnerMaxIdlePeriod();
                 long runnerSleepIdlePeriod = configuration.getRunnerSleepIdlePeriod();
 
                 while (!ScalingWorkerQueue.this.shouldStop()) {
-                    Optional<E> optionalElement = ScalingWorkerQueue.this.getNextElement();
-                    // Process element
-                    if (optionalElement.isPresent()) {
-                        E element = optionalElement.get();
-                        LOG.info("Got next element: {}", toStringFunction.apply(element));
-                        try {
-                            noResultStartTime = null;   // Reset idle counter (in case of no result)
-                            if (trylockFunction.apply(element) && integrityCheckFunction.apply(element)) {
-                                try {
-                                    worker.accept(element, configuration);
-                                } catch (Throwable throwable) {
-                                    LOG.error("Caught exception while processing element '{}': {}", toStringFunction.apply(element), asShortString(throwable), throwable);
-                                } finally {
-                                    unlockFunction.accept(element);
-                                }
-                            }
-                        } finally {
-                            markElementAsProcessed(element);
-                        }
+                    // Check, if this runner should be stopped by the scaling policy (mandatory runners are kept)
+                    if (canDieIfIdle && ScalingWorkerQueue.this.shouldStopRunner()) {
+                        LOG.info("Runner is stopped by the scaling policy.");
+                        break;
+                    }
+                    // Wait for the next element(s) (at most the idle period)
+                    List<E> elements;
+                    try {
+                        elements = ScalingWorkerQueue.this.getNextElements(runnerSleepIdlePeriod);
+                    } catch (InterruptedException e) {
+                        throw new UnsupportedOperationException("The runner thread must not interrupted.", e);
+                    }
+                    // Process element(s)
+                    if (!elements.isEmpty()) {
+                        logNextElements(elements);
+                        noResultStartTime = null;   // Reset idle counter (in case of no result)
+                        processElements(elements);
                     }
                     // No result
                     else {
@@ -387,15 +936,6 @@ public class ScalingWorkerQueue<E, C extends WorkerQueueConfiguration> {
                                 break;
                             }
                         }
-                        // Wait ...
-                        long idleWaitUntil = System.currentTimeMillis() + runnerSleepIdlePeriod;
-                        while (!ScalingWorkerQueue.this.shouldStop() && System.currentTimeMillis() < idleWaitUntil) {
-                            try {
-                                Thread.sleep(sleepPeriod);
-                            } catch (InterruptedException e) {
-                                throw new UnsupportedOperationException("The runner thread must not interrupted.", e);
-                            }
-                        }
                     }
                 }
             } catch (Exception e) {
@@ -403,10 +943,204 @@ public class ScalingWorkerQueue<E, C extends WorkerQueueConfiguration> {
             } finally {
                 LOG.info("Runner {} stopped", number);
                 Thread.currentThread().setName(oldThreadName);
+                if (statistics != null) {
+                    statistics.finishedRunnerTime.add(System.nanoTime() - startTime);
+                }
                 ScalingWorkerQueue.this.removeRunner(this);
             }
         }
 
     }
 
-}
\ No newline at end of file
+    /**
+     * Takes the elements from the internal queue and starts a thread for each of them (see {@link #withThreadPerElement(ThreadFactory, int)}).
+     * <p>
+     * There are no idle threads (to be stopped), because each element thread ends after processing its element. On stop, the spawner waits for the
+     * elements in work.
+     */
+    private class ElementSpawner implements Runnable {
+
+        @Override
+        public void run() {
+            String oldThreadName = Thread.currentThread().getName();
+            try {
+                Thread.currentThread().setName(workerThreadNameSupplier.apply(Thread.currentThread(), 0));
+                LOG.info("Element spawner started (max concurrent elements: {})", maxConcurrentElements);
+
+                long runnerSleepIdlePeriod = configuration.getRunnerSleepIdlePeriod();
+
+                while (!ScalingWorkerQueue.this.shouldStop()) {
+                    try {
+                        // Wait for a free permit, then for the next element (at most the idle period each)
+                        if (!elementPermits.tryAcquire(runnerSleepIdlePeriod, TimeUnit.MILLISECONDS)) {
+                            continue;
+                        }
+                        List<E> elements = ScalingWorkerQueue.this.getNextElements(runnerSleepIdlePeriod);
+                        if (elements.isEmpty()) {
+                            LOG.trace("Got no next element");
+                            elementPermits.release();
+                            continue;
+                        }
+                        logNextElements(elements);
+                        startElementThread(elements);
+                    } catch (InterruptedException e) {
+                        throw new UnsupportedOperationException("The spawner thread must not interrupted.", e);
+                    }
+                }
+                // Wait for the elements in work
+                elementPermits.acquireUninterruptibly(maxConcurrentElements);
+                elementPermits.release(maxConcurrentElements);
+            } catch (Exception e) {
+                LOG.error("Caught exception while running: {}", asShortString(e), e);
+            } finally {
+                LOG.info("Element spawner stopped");
+                Thread.currentThread().setName(oldThreadName);
+                ScalingWorkerQueue.this.removeRunner(this);
+            }
+        }
+
+        private void startElementThread(List<E> elements) {
+            try {
+                elementThreadFactory.newThread(() -> {
+                    try {
+                        processElements(elements);
+                    } finally {
+                        elementPermits.release();
+                    }
+                }).start();
+            } catch (Throwable throwable) {
+                // The elements are fetched again later
+                LOG.error("Caught exception while starting thread for {} element(s): {}", elements.size(), asShortString(throwable), throwable);
+                elements.forEach(ScalingWorkerQueue.this::markElementAsProcessed);
+                elementPermits.release();
+            }
+        }
+    }
+
+    /**
+     * Collected metrics (see {@link #withMetrics()}).
+     */
+    private static final class Statistics {
+
+        private final LongAdder fetchedCount = new LongAdder();
+
+        private final LongAdder addedCount = new LongAdder();
+
+        private final LongAdder skippedCount = new LongAdder();
+
+        private final LongAdder failedCount = new LongAdder();
+
+        /**
+         * Lifetime (in ns) of the stopped runners.
+         */
+        private final LongAdder finishedRunnerTime = new LongAdder();
+
+        private final LatencyHistogram timeInQueue = new LatencyHistogram();
+
+        private final LatencyHistogram processingTime = new LatencyHistogram();
+
+        private final LatencyHistogram supplierLatency = new LatencyHistogram();
+    }
+
+    /**
+     * JMX view of the metrics.
+     */
+    private final class WorkerQueueMXBeanImpl implements WorkerQueueMXBean {
+
+        @Override
+        public long getFetchedCount() {
+            return statistics.fetchedCount.sum();
+        }
+
+        @Override
+        public long getAddedCount() {
+            return statistics.addedCount.sum();
+        }
+
+        @Override
+        public long getSkippedCount() {
+            return statistics.skippedCount.sum();
+        }
+
+        @Override
+        public long getProcessedCount() {
+            return processedCount.sum();
+        }
+
+        @Override
+        public long getFailedCount() {
+            return statistics.failedCount.sum();
+        }
+
+        @Override
+        public int getQueueSize() {
+            return ScalingWorkerQueue.this.getQueueSize();
+        }
+
+        @Override
+        public int getElementsInWorkCount() {
+            return ScalingWorkerQueue.this.getElementsInWorkCount();
+        }
+
+        @Override
+        public int getRunnerCount() {
+            return ScalingWorkerQueue.this.getRunnersCount();
+        }
+
+        @Override
+        public double getBusyRatio() {
+            return ScalingWorkerQueue.this.getBusyRatio();
+        }
+
+        @Override
+        public double getTimeInQueueMean() {
+            return statistics.timeInQueue.snapshot().getMean();
+        }
+
+        @Override
+        public long getTimeInQueue99thPercentile() {
+            return statistics.timeInQueue.snapshot().getPercentile(0.99);
+        }
+
+        @Override
+        public long getTimeInQueueMax() {
+            return statistics.timeInQueue.snapshot().getMax();
+        }
+
+        @Override
+        public double getProcessingTimeMean() {
+            return statistics.processingTime.snapshot().getMean();
+        }
+
+        @Override
+        public long getProcessingTime99thPercentile() {
+            return statistics.processingTime.snapshot().getPercentile(0.99);
+        }
+
+        @Override
+        public long getProcessingTimeMax() {
+            return statistics.processingTime.snapshot().getMax();
+        }
+
+        @Override
+        public long getFetchCount() {
+            return statistics.supplierLatency.snapshot().getCount();
+        }
+
+        @Override
+        public double getSupplierLatencyMean() {
+            return statistics.supplierLatency.snapshot().getMean();
+        }
+
+        @Override
+        public long getSupplierLatency99thPercentile() {
+            return statistics.supplierLatency.snapshot().getPercentile(0.99);
+        }
+
+        @Override
+        public long getSupplierLatencyMax() {
+            return statistics.supplierLatency.snapshot().getMax();
+        }
+    }
+
+}
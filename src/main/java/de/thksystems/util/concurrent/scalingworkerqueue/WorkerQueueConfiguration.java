@@ -10,7 +10,7 @@ package de.thksystems.util.concurrent.scalingworkerqueue;
 public interface WorkerQueueConfiguration {
 
     /**
-     * Period (in ms) the dispatcher / or runner sleeps between checks
+     * Period (in ms) the dispatcher sleeps between checks after an error. (Otherwise, the dispatcher and the runners are woken up by signals.)
      */
     long getSleepPeriod();
 
@@ -50,7 +50,7 @@ public interface WorkerQueueConfiguration {
     int getMaxRunnerCount();
 
     /**
-     * Period (in ms) the runners sleeps, if it is idle. (Before it tries to get the next element.)
+     * Maximum period (in ms) an idle runner waits for the next element. (It is woken up at once, if an element is added.)
      */
     long getRunnerSleepIdlePeriod();
 
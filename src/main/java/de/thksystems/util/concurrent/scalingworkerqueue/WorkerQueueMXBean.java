@@ -0,0 +1,52 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent.scalingworkerqueue;
+
+/**
+ * JMX interface of the metrics of a {@link ScalingWorkerQueue} (see {@link ScalingWorkerQueue#registerMBean(String)}). Times are in nanoseconds.
+ */
+public interface WorkerQueueMXBean {
+
+    long getFetchedCount();
+
+    long getAddedCount();
+
+    long getSkippedCount();
+
+    long getProcessedCount();
+
+    long getFailedCount();
+
+    int getQueueSize();
+
+    int getElementsInWorkCount();
+
+    int getRunnerCount();
+
+    double getBusyRatio();
+
+    double getTimeInQueueMean();
+
+    long getTimeInQueue99thPercentile();
+
+    long getTimeInQueueMax();
+
+    double getProcessingTimeMean();
+
+    long getProcessingTime99thPercentile();
+
+    long getProcessingTimeMax();
+
+    long getFetchCount();
+
+    double getSupplierLatencyMean();
+
+    long getSupplierLatency99thPercentile();
+
+    long getSupplierLatencyMax();
+}
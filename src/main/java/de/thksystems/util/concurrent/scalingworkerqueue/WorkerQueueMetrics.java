@@ -0,0 +1,147 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent.scalingworkerqueue;
+
+import de.thksystems.util.concurrent.LatencyHistogram;
+
+/**
+ * An immutable snapshot of the metrics of a {@link ScalingWorkerQueue} (see {@link ScalingWorkerQueue#withMetrics()}). Counts are cumulated since the start
+ * of the queue.
+ */
+public final class WorkerQueueMetrics {
+
+    private final long fetchedCount;
+
+    private final long addedCount;
+
+    private final long skippedCount;
+
+    private final long processedCount;
+
+    private final long failedCount;
+
+    private final int queueSize;
+
+    private final int elementsInWorkCount;
+
+    private final int runnerCount;
+
+    private final double busyRatio;
+
+    private final LatencyHistogram.Snapshot timeInQueue;
+
+    private final LatencyHistogram.Snapshot processingTime;
+
+    private final LatencyHistogram.Snapshot supplierLatency;
+
+    WorkerQueueMetrics(long fetchedCount, long addedCount, long skippedCount, long processedCount, long failedCount, int queueSize, int elementsInWorkCount,
+            int runnerCount, double busyRatio, LatencyHistogram.Snapshot timeInQueue, LatencyHistogram.Snapshot processingTime,
+            LatencyHistogram.Snapshot supplierLatency) {
+        this.fetchedCount = fetchedCount;
+        this.addedCount = addedCount;
+        this.skippedCount = skippedCount;
+        this.processedCount = processedCount;
+        this.failedCount = failedCount;
+        this.queueSize = queueSize;
+        this.elementsInWorkCount = elementsInWorkCount;
+        this.runnerCount = runnerCount;
+        this.busyRatio = busyRatio;
+        this.timeInQueue = timeInQueue;
+        this.processingTime = processingTime;
+        this.supplierLatency = supplierLatency;
+    }
+
+    /**
+     * Count of elements returned by the supplier.
+     */
+    public long getFetchedCount() {
+        return fetchedCount;
+    }
+
+    /**
+     * Count of fetched elements added to the internal queue.
+     */
+    public long getAddedCount() {
+        return addedCount;
+    }
+
+    /**
+     * Count of fetched elements skipped, because they were already in the internal queue or in work.
+     */
+    public long getSkippedCount() {
+        return skippedCount;
+    }
+
+    /**
+     * Count of processed elements, the worker was called for (including failed ones, excluding ones that could not be locked or failed the integrity check).
+     */
+    public long getProcessedCount() {
+        return processedCount;
+    }
+
+    /**
+     * Count of elements, whose processing failed.
+     */
+    public long getFailedCount() {
+        return failedCount;
+    }
+
+    /**
+     * Count of elements currently in the internal queue.
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * Count of elements currently in work.
+     */
+    public int getElementsInWorkCount() {
+        return elementsInWorkCount;
+    }
+
+    public int getRunnerCount() {
+        return runnerCount;
+    }
+
+    /**
+     * Ratio (0..1) of the time the runners (or the permits of the element threads) are busy with processing (the rest of their time they are idle).
+     */
+    public double getBusyRatio() {
+        return busyRatio;
+    }
+
+    /**
+     * Histogram of the times (in nanoseconds) elements waited in the internal queue.
+     */
+    public LatencyHistogram.Snapshot getTimeInQueue() {
+        return timeInQueue;
+    }
+
+    /**
+     * Histogram of the processing times (in nanoseconds) per call of the worker (an element or a batch).
+     */
+    public LatencyHistogram.Snapshot getProcessingTime() {
+        return processingTime;
+    }
+
+    /**
+     * Histogram of the latencies (in nanoseconds) of the supplier. (Its count is the count of fetches.)
+     */
+    public LatencyHistogram.Snapshot getSupplierLatency() {
+        return supplierLatency;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "WorkerQueueMetrics[fetched=%d, added=%d, skipped=%d, processed=%d, failed=%d, queueSize=%d, inWork=%d, runners=%d, busyRatio=%.2f, timeInQueue=(%s), processingTime=(%s), supplierLatency=(%s)]",
+                fetchedCount, addedCount, skippedCount, processedCount, failedCount, queueSize, elementsInWorkCount, runnerCount, busyRatio, timeInQueue,
+                processingTime, supplierLatency);
+    }
+}
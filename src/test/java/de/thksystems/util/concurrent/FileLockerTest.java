@@ -0,0 +1,105 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileLockerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testLockAndUnlock() throws Exception {
+        Path directory = temporaryFolder.getRoot().toPath().resolve("locks");
+        FileLocker<String> locker = new FileLocker<>(directory);
+        Path lockFile = directory.resolve("LOCK+ME%2F1.lock");
+
+        locker.lock("LOCK ME/1");
+        assertTrue(locker.tryLock("LOCK ME/1"));
+        assertTrue(locker.isHeldByCurrentThread("LOCK ME/1"));
+        assertFalse(locker.isLocked("LOCK ME/1"));
+        assertFileLocked(lockFile, true);
+
+        AtomicBoolean lockedByOtherThread = new AtomicBoolean(true);
+        AtomicBoolean locked = new AtomicBoolean();
+        runInOtherThread(() -> {
+            lockedByOtherThread.set(locker.tryLock("LOCK ME/1"));
+            locked.set(locker.isLocked("LOCK ME/1"));
+        });
+        assertFalse(lockedByOtherThread.get());
+        assertTrue(locked.get());
+
+        // Reentrant unlocking keeps the file lock
+        locker.unlock("LOCK ME/1");
+        assertFileLocked(lockFile, true);
+        locker.unlock("LOCK ME/1");
+        assertFileLocked(lockFile, false);
+        assertFalse(locker.isHeldByCurrentThread("LOCK ME/1"));
+
+        runInOtherThread(() -> {
+            lockedByOtherThread.set(locker.tryLock("LOCK ME/1"));
+            locker.unlock("LOCK ME/1");
+        });
+        assertTrue(lockedByOtherThread.get());
+    }
+
+    @Test
+    public void testLockedByOtherProcess() throws Exception {
+        Path directory = temporaryFolder.getRoot().toPath();
+        FileLocker<String> locker = new FileLocker<>(directory);
+        // A second locker on the same directory behaves like another process (the file lock is held by the JVM)
+        FileLocker<String> otherLocker = new FileLocker<>(directory);
+
+        otherLocker.lock("LOCKME");
+        assertFalse(locker.tryLock("LOCKME"));
+        assertFalse(locker.isHeldByCurrentThread("LOCKME"));
+        assertTrue(locker.isLocked("LOCKME"));
+
+        otherLocker.unlock("LOCKME");
+        assertFalse(locker.isLocked("LOCKME"));
+        assertTrue(locker.tryLock("LOCKME"));
+        locker.unlock("LOCKME");
+    }
+
+    private static void assertFileLocked(Path lockFile, boolean locked) throws Exception {
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.WRITE)) {
+            FileLock fileLock = channel.tryLock();
+            assertNotNull(fileLock);
+            fileLock.release();
+            if (locked) {
+                fail("Lock file is not locked: " + lockFile);
+            }
+        } catch (OverlappingFileLockException e) {
+            if (!locked) {
+                fail("Lock file is locked: " + lockFile);
+            }
+        }
+    }
+
+    private static void runInOtherThread(Runnable runnable) throws InterruptedException {
+        Thread thread = new Thread(runnable);
+        thread.start();
+        thread.join();
+    }
+
+}
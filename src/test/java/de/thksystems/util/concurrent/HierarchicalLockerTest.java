@@ -0,0 +1,140 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class HierarchicalLockerTest {
+
+    @Test
+    public void testParentExcludesChildren() throws Exception {
+        HierarchicalLocker locker = new HierarchicalLocker();
+        locker.lock("tenant/order");
+        // Reentrant locks of descendants are possible
+        assertTrue(locker.tryLock("tenant/order/line"));
+        locker.unlock("tenant/order/line");
+
+        AtomicBoolean childLocked = new AtomicBoolean(true);
+        AtomicBoolean siblingLocked = new AtomicBoolean();
+        AtomicBoolean parentLocked = new AtomicBoolean(true);
+        runInOtherThread(() -> {
+            childLocked.set(locker.tryReadLock("tenant/order/line"));
+            siblingLocked.set(locker.tryLock("tenant/other"));
+            locker.unlock("tenant/other");
+            parentLocked.set(locker.tryReadLock("tenant"));
+        });
+        assertFalse(childLocked.get());
+        assertTrue(siblingLocked.get());
+        assertFalse(parentLocked.get());
+
+        locker.unlock("tenant/order");
+        assertEquals(0, locker.getElementCount());
+    }
+
+    @Test
+    public void testChildExcludesParent() throws Exception {
+        HierarchicalLocker locker = new HierarchicalLocker();
+        locker.lock("tenant/order/line");
+        assertFalse(locker.isLocked("tenant"));
+
+        AtomicBoolean parentLocked = new AtomicBoolean(true);
+        AtomicBoolean locked = new AtomicBoolean();
+        runInOtherThread(() -> {
+            parentLocked.set(locker.tryLock("tenant"));
+            locked.set(locker.isLocked("tenant") && locker.isLocked("tenant/order/line/detail") && !locker.isLocked("tenant/other"));
+        });
+        assertFalse(parentLocked.get());
+        assertTrue(locked.get());
+
+        CountDownLatch parentLockedLatch = new CountDownLatch(1);
+        Thread other = new Thread(() -> locker.executeWithLock("tenant", parentLockedLatch::countDown));
+        other.start();
+        assertFalse(parentLockedLatch.await(50, TimeUnit.MILLISECONDS));
+        locker.unlock("tenant/order/line");
+        assertTrue(parentLockedLatch.await(1, TimeUnit.SECONDS));
+        other.join();
+        assertEquals(0, locker.getElementCount());
+    }
+
+    @Test
+    public void testReleasedIntentionWakesUpWaiter() throws Exception {
+        HierarchicalLocker locker = new HierarchicalLocker();
+        locker.readLock("tenant/order"); // IS on "tenant"
+        locker.lock("tenant/other"); // IX on "tenant"
+
+        CountDownLatch parentReadLockedLatch = new CountDownLatch(1);
+        Thread other = new Thread(() -> locker.executeWithReadLock("tenant", parentReadLockedLatch::countDown));
+        other.start();
+        assertFalse(parentReadLockedLatch.await(50, TimeUnit.MILLISECONDS));
+        // Releasing IX (while still holding IS) must wake up the waiter for S
+        locker.unlock("tenant/other");
+        assertTrue(parentReadLockedLatch.await(1, TimeUnit.SECONDS));
+        other.join();
+
+        locker.unlockRead("tenant/order");
+        assertEquals(0, locker.getElementCount());
+    }
+
+    @Test
+    public void testSharedLocks() throws Exception {
+        HierarchicalLocker locker = new HierarchicalLocker();
+        locker.readLock("tenant");
+
+        AtomicBoolean childReadLocked = new AtomicBoolean();
+        AtomicBoolean childLocked = new AtomicBoolean(true);
+        runInOtherThread(() -> {
+            childReadLocked.set(locker.tryReadLock("tenant/order"));
+            locker.unlockRead("tenant/order");
+            childLocked.set(locker.tryLock("tenant/order"));
+        });
+        assertTrue(childReadLocked.get());
+        assertFalse(childLocked.get());
+
+        locker.unlockRead("tenant");
+        assertEquals(0, locker.getElementCount());
+    }
+
+    @Test
+    public void testTimeoutReleasesAncestors() throws Exception {
+        HierarchicalLocker locker = new HierarchicalLocker();
+        locker.lock("tenant/order");
+
+        AtomicBoolean timedOut = new AtomicBoolean();
+        runInOtherThread(() -> {
+            try {
+                locker.lock("tenant/order/line", 20L, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                timedOut.set(true);
+            }
+        });
+        assertTrue(timedOut.get());
+
+        // The intention lock of the timed out thread on 'tenant' is released again
+        locker.unlock("tenant/order");
+        assertEquals(0, locker.getElementCount());
+        // Unlocking a path not locked is ignored
+        locker.unlock("tenant/order");
+        assertEquals(0, locker.getElementCount());
+    }
+
+    private static void runInOtherThread(Runnable runnable) throws InterruptedException {
+        Thread thread = new Thread(runnable);
+        thread.start();
+        thread.join();
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class KeyedSemaphoreTest {
+
+    @Test
+    public void testPermitsPerElement() throws Exception {
+        KeyedSemaphore<String> semaphore = new KeyedSemaphore<String>(2).withMetrics();
+        assertTrue(semaphore.tryAcquire("TENANT"));
+        semaphore.acquire("TENANT");
+        assertFalse(semaphore.tryAcquire("TENANT"));
+        assertTrue(semaphore.tryAcquire("OTHER"));
+        assertEquals(0, semaphore.getAvailablePermits("TENANT"));
+
+        // Permits may be released by other threads
+        AtomicBoolean timedOut = new AtomicBoolean();
+        runInOtherThread(() -> {
+            try {
+                semaphore.acquire("TENANT", 10L, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                timedOut.set(true);
+            }
+            semaphore.release("TENANT");
+        });
+        assertTrue(timedOut.get());
+        assertEquals(1, semaphore.getAvailablePermits("TENANT"));
+
+        semaphore.release("TENANT");
+        semaphore.release("OTHER");
+        // Releasing without an acquired permit is ignored
+        semaphore.release("OTHER");
+        assertEquals(0, semaphore.getElementCount());
+        assertEquals(2, semaphore.getAvailablePermits("TENANT"));
+
+        LockerMetrics<String> metrics = semaphore.getMetrics();
+        assertEquals(3L, metrics.getLockCount());
+        assertEquals(1L, metrics.getContentionCount());
+        assertEquals(1L, metrics.getTimeoutCount());
+        assertEquals(Long.valueOf(1L), metrics.getHotElements().get("TENANT"));
+    }
+
+    @Test
+    public void testBoundedConcurrency() throws Exception {
+        testBoundedConcurrency(new KeyedSemaphore<>(3));
+        testBoundedConcurrency(new KeyedSemaphore<>(element -> 3, false));
+    }
+
+    private void testBoundedConcurrency(KeyedSemaphore<String> semaphore) throws Exception {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 50; j++) {
+                    semaphore.executeWithPermit("TENANT", () -> {
+                        maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        Thread.yield();
+                        running.decrementAndGet();
+                    });
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(maxRunning.get() <= 3);
+        assertEquals(0, semaphore.getElementCount());
+    }
+
+    @Test
+    public void testFairOrder() throws Exception {
+        KeyedSemaphore<String> semaphore = new KeyedSemaphore<>(1);
+        semaphore.acquire("TENANT");
+        List<Integer> order = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            int number = i;
+            Thread thread = new Thread(() -> semaphore.executeWithPermit("TENANT", () -> order.add(number)));
+            threads.add(thread);
+            thread.start();
+            while (semaphore.getWaitingCount("TENANT") <= i) {
+                Thread.sleep(1L);
+            }
+        }
+        // No barging, if threads are waiting
+        AtomicBoolean acquired = new AtomicBoolean(true);
+        runInOtherThread(() -> acquired.set(semaphore.tryAcquire("TENANT")));
+        assertFalse(acquired.get());
+
+        semaphore.release("TENANT");
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(Arrays.asList(0, 1, 2), order);
+    }
+
+    @Test
+    public void testBargingWakesUpAllWaiters() throws Exception {
+        // Several permits released back to back must wake up as many waiters (and not the head waiter several times only)
+        for (int round = 0; round < 50; round++) {
+            KeyedSemaphore<String> semaphore = new KeyedSemaphore<>(element -> 2, false);
+            semaphore.acquire("TENANT");
+            semaphore.acquire("TENANT");
+            AtomicInteger acquiredCount = new AtomicInteger();
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                Thread thread = new Thread(() -> {
+                    semaphore.acquire("TENANT");
+                    acquiredCount.incrementAndGet();
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            while (semaphore.getWaitingCount("TENANT") < 3) {
+                Thread.sleep(1L);
+            }
+            semaphore.release("TENANT");
+            semaphore.release("TENANT");
+            long timeout = System.currentTimeMillis() + 5_000L;
+            while (acquiredCount.get() < 2 && System.currentTimeMillis() < timeout) {
+                Thread.sleep(1L);
+            }
+            assertEquals("Round " + round, 2, acquiredCount.get());
+
+            semaphore.release("TENANT");
+            for (Thread thread : threads) {
+                thread.join(5_000L);
+                assertFalse("Round " + round, thread.isAlive());
+            }
+        }
+    }
+
+    private static void runInOtherThread(Runnable runnable) throws InterruptedException {
+        Thread thread = new Thread(runnable);
+        thread.start();
+        thread.join();
+    }
+
+}
@@ -0,0 +1,106 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class KeyedSerialExecutorTest {
+
+    @Test
+    public void testOrderPerElement() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            KeyedSerialExecutor<String> executor = new KeyedSerialExecutor<>(executorService);
+            List<Integer> resultsA = new ArrayList<>();
+            List<Integer> resultsB = new ArrayList<>();
+            List<CompletableFuture<Void>> futures = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                int number = i;
+                futures.add(executor.execute("A", () -> resultsA.add(number)));
+                futures.add(executor.execute("B", () -> resultsB.add(number)));
+            }
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+            for (int i = 0; i < 1000; i++) {
+                assertEquals(Integer.valueOf(i), resultsA.get(i));
+                assertEquals(Integer.valueOf(i), resultsB.get(i));
+            }
+            assertEquals(0, executor.getElementCount());
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testElementsDoNotBlockEachOther() throws Exception {
+        // Waiting tasks do not occupy a thread of the executor: One thread is blocked by "A", the waiting "A2" must leave the other one to "B"
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            KeyedSerialExecutor<String> executor = new KeyedSerialExecutor<>(executorService);
+            CountDownLatch latch = new CountDownLatch(1);
+            CompletableFuture<Void> first = executor.execute("A", () -> awaitQuietly(latch));
+            CompletableFuture<String> second = executor.submit("A", () -> "A2");
+            assertEquals(2, executor.getQueueDepth("A"));
+            assertEquals(Integer.valueOf(2), executor.getQueueDepths().get("A"));
+
+            assertEquals("B", executor.submit("B", () -> "B").get(1, TimeUnit.SECONDS));
+            assertFalse(first.isDone());
+            assertFalse(second.isDone());
+
+            latch.countDown();
+            assertEquals("A2", second.get(1, TimeUnit.SECONDS));
+            assertTrue(first.isDone());
+            assertEquals(0, executor.getQueueDepth("A"));
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailedTaskDoesNotStopQueue() throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        try {
+            KeyedSerialExecutor<String> executor = new KeyedSerialExecutor<>(executorService);
+            CompletableFuture<Object> failed = executor.submit("A", () -> {
+                throw new IllegalStateException("FAILED");
+            });
+            CompletableFuture<String> next = executor.submit("A", () -> "NEXT");
+            try {
+                failed.get(1, TimeUnit.SECONDS);
+                fail("Exception expected");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+            assertEquals("NEXT", next.get(1, TimeUnit.SECONDS));
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
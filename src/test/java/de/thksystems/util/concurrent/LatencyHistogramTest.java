@@ -0,0 +1,38 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testSnapshot() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0L, histogram.snapshot().getPercentile(0.99));
+
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 10L);
+        }
+        histogram.record(-5L);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(101L, snapshot.getCount());
+        assertEquals(50500L, snapshot.getSum());
+        assertEquals(1000L, snapshot.getMax());
+        assertEquals(500.0, snapshot.getMean(), 0.1);
+        // 500 is in the bucket [256, 512)
+        assertEquals(511L, snapshot.getPercentile(0.5));
+        // 990 is in the bucket [512, 1024), limited by the maximum
+        assertEquals(1000L, snapshot.getPercentile(0.99));
+        assertEquals(0L, snapshot.getPercentile(0.0));
+    }
+
+}
@@ -9,16 +9,42 @@ package de.thksystems.util.concurrent;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
 import java.lang.ref.WeakReference;
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import javax.management.ObjectName;
+
+import org.junit.Assume;
 import org.junit.Ignore;
 import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class LockerTest {
 
+    private static final Logger LOG = LoggerFactory.getLogger(LockerTest.class);
+
     @Test
     public void testLockAndUnlock() throws Exception {
         final Locker<String> locker = new Locker<String>();
@@ -92,19 +118,616 @@ public class LockerTest {
     }
 
     @Test
-    @Ignore
+    public void testHandOverOnUnlock() throws Exception {
+        Locker<String> locker = new Locker<>();
+        locker.lock("LOCKME");
+
+        CountDownLatch locked = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            locker.lock("LOCKME");
+            locked.countDown();
+            locker.unlock("LOCKME");
+        });
+        waiter.start();
+        assertFalse(locked.await(50, TimeUnit.MILLISECONDS));
+
+        locker.unlock("LOCKME");
+        assertTrue(locked.await(1, TimeUnit.SECONDS));
+        waiter.join();
+        assertFalse(locker.isLocked("LOCKME"));
+    }
+
+    @Test
+    public void testNanosecondTimeout() throws Exception {
+        Locker<String> locker = new Locker<>();
+        locker.lock("LOCKME");
+
+        AtomicBoolean timedOut = new AtomicBoolean();
+        Thread waiter = new Thread(() -> {
+            try {
+                locker.lock("LOCKME", 500L, TimeUnit.MICROSECONDS);
+            } catch (TimeoutException e) {
+                timedOut.set(true);
+            }
+        });
+        waiter.start();
+        waiter.join(1_000L);
+        assertTrue(timedOut.get());
+
+        // The timed out thread must not block following ones
+        locker.unlock("LOCKME");
+        Thread2 thread2 = new Thread2(locker);
+        thread2.start();
+        thread2.join();
+        assertTrue(thread2.result);
+    }
+
+    @Test
+    public void testInterruptStatusIsRestored() throws Exception {
+        Locker<String> locker = new Locker<>();
+        locker.lock("LOCKME");
+
+        AtomicBoolean interrupted = new AtomicBoolean();
+        Thread waiter = new Thread(() -> {
+            locker.lock("LOCKME");
+            interrupted.set(Thread.currentThread().isInterrupted());
+            locker.unlock("LOCKME");
+        });
+        waiter.start();
+        Thread.sleep(50);
+        waiter.interrupt();
+        Thread.sleep(50);
+        assertTrue(waiter.isAlive());
+
+        locker.unlock("LOCKME");
+        waiter.join();
+        assertTrue(interrupted.get());
+    }
+
+    @Test
+    public void testLockInterruptibly() throws Exception {
+        Locker<String> locker = new Locker<>();
+        locker.lock("LOCKME");
+
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+        AtomicInteger interruptedCount = new AtomicInteger();
+        executorService.execute(() -> {
+            try {
+                locker.lockInterruptibly("LOCKME");
+            } catch (InterruptedException e) {
+                interruptedCount.incrementAndGet();
+            }
+        });
+        executorService.execute(() -> {
+            try {
+                locker.tryLock("LOCKME", Duration.ofMinutes(1L));
+            } catch (InterruptedException e) {
+                interruptedCount.incrementAndGet();
+            }
+        });
+        while (locker.getWaitingCount("LOCKME") < 2) {
+            Thread.sleep(1L);
+        }
+        executorService.shutdownNow();
+        assertTrue(executorService.awaitTermination(1, TimeUnit.SECONDS));
+        assertEquals(2, interruptedCount.get());
+        assertEquals(0, locker.getWaitingCount("LOCKME"));
+
+        AtomicBoolean locked = new AtomicBoolean(true);
+        runInOtherThread(() -> {
+            try {
+                locked.set(locker.tryLock("LOCKME", Duration.ofMillis(10L)));
+            } catch (InterruptedException e) {
+                // Keeps 'locked' set, so the assertion fails
+            }
+        });
+        assertFalse(locked.get());
+
+        locker.unlock("LOCKME");
+        assertEquals(0, locker.getElementCount());
+        Thread.currentThread().interrupt();
+        try {
+            locker.lockInterruptibly("LOCKME");
+            fail("Interrupted exception expected");
+        } catch (InterruptedException e) {
+            assertFalse(locker.isHeldByCurrentThread("LOCKME"));
+        }
+    }
+
+    @Test
+    public void testLockWithHandle() throws Exception {
+        Locker<String> locker = new Locker<>();
+        try (LockHandle<String> lockHandle = locker.lockWithHandle("LOCKME")) {
+            assertEquals("LOCKME", lockHandle.getElement());
+            try (LockHandle<String> reentrantLockHandle = locker.tryLockWithHandle("LOCKME").get()) {
+                assertTrue(locker.isHeldByCurrentThread("LOCKME"));
+            }
+            assertTrue(locker.isHeldByCurrentThread("LOCKME"));
+
+            AtomicBoolean locked = new AtomicBoolean(true);
+            runInOtherThread(() -> {
+                locked.set(locker.tryLockWithHandle("LOCKME").isPresent());
+                // Unlocking by other threads is ignored
+                lockHandle.unlock();
+            });
+            assertFalse(locked.get());
+            assertTrue(locker.isHeldByCurrentThread("LOCKME"));
+        }
+        assertFalse(locker.isHeldByCurrentThread("LOCKME"));
+        assertEquals(0, locker.getElementCount());
+    }
+
+    @Test
+    public void testFairness() throws Exception {
+        // FIFO: The lock is handed over to the waiting thread, so the unlocking thread cannot lock again
+        assertEquals(0, countRelocksWhileWaiting(new Locker<String>().withFairness(Locker.Fairness.FIFO)));
+        // Barging: The unlocking thread may lock again before the woken up thread runs
+        assertTrue(countRelocksWhileWaiting(new Locker<String>().withFairness(Locker.Fairness.BARGING)) > 0);
+    }
+
+    private int countRelocksWhileWaiting(Locker<String> locker) throws Exception {
+        int relockCount = 0;
+        for (int i = 0; i < 20; i++) {
+            locker.lock("LOCKME");
+            Thread waiter = new Thread(() -> locker.executeWithLock("LOCKME", () -> {
+            }));
+            waiter.start();
+            while (locker.getWaitingCount("LOCKME") == 0) {
+                Thread.sleep(1L);
+            }
+            locker.unlock("LOCKME");
+            if (locker.tryLock("LOCKME")) {
+                relockCount++;
+                locker.unlock("LOCKME");
+            }
+            waiter.join();
+        }
+        assertEquals(0, locker.getElementCount());
+        return relockCount;
+    }
+
+    @Test
+    public void testMutualExclusionWithBarging() throws Exception {
+        Locker<String> locker = new Locker<String>().withFairness(Locker.Fairness.BARGING);
+        int threadCount = 8;
+        int[] counter = { 0 };
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < threadCount; i++) {
+            Thread thread = new Thread(() -> {
+                for (int j = 0; j < 1000; j++) {
+                    locker.executeWithLock("LOCKME", () -> counter[0]++);
+                    try {
+                        // Timed out waiters must pass on their wake-up
+                        locker.lock("LOCKME", 1L, TimeUnit.MICROSECONDS);
+                        locker.unlock("LOCKME");
+                    } catch (TimeoutException e) {
+                        // Expected sometimes
+                    }
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(threadCount * 1000, counter[0]);
+        assertEquals(0, locker.getElementCount());
+    }
+
+    @Ignore("Benchmark")
+    @Test
+    public void benchmarkFairness() throws Exception {
+        for (Locker.Fairness fairness : Locker.Fairness.values()) {
+            Locker<String> locker = new Locker<String>().withFairness(fairness).withMetrics();
+            int threadCount = 16;
+            long durationMillis = 5000L;
+            long endTime = System.currentTimeMillis() + durationMillis;
+            long[] counter = { 0L };
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < threadCount; i++) {
+                Thread thread = new Thread(() -> {
+                    while (System.currentTimeMillis() < endTime) {
+                        locker.executeWithLock("LOCKME", () -> counter[0]++);
+                    }
+                });
+                threads.add(thread);
+                thread.start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            LockerMetrics<String> metrics = locker.getMetrics();
+            LOG.info("{}: {} locks/s, wait time: {}", fairness, counter[0] * 1000L / durationMillis, metrics.getWaitTime());
+        }
+    }
+
+    @Test
+    public void testMutualExclusionUnderContention() throws Exception {
+        Locker<Integer> locker = new Locker<>();
+        int[] counters = new int[4];
+        Thread[] threads = new Thread[16];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 1_000; j++) {
+                    int element = j % counters.length;
+                    locker.executeWithLock(element, () -> counters[element]++);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (int counter : counters) {
+            assertEquals(threads.length * 1_000 / counters.length, counter);
+        }
+    }
+
+    @Test
+    public void testIdleElementsAreRemoved() throws Exception {
+        Locker<Long> locker = new Locker<>();
+        for (long l = 0; l < 100; l++) {
+            locker.lock(l);
+            locker.lock(l);
+            assertEquals(1, locker.getElementCount());
+            locker.unlock(l);
+            locker.unlock(l);
+            assertEquals(0, locker.getElementCount());
+        }
+
+        locker.lock(1L);
+        AtomicBoolean tryLockResult = new AtomicBoolean(true);
+        Thread waiter = new Thread(() -> {
+            try {
+                locker.lock(1L, 50L);
+            } catch (TimeoutException e) {
+                // expected
+            }
+            tryLockResult.set(locker.tryLock(1L));
+        });
+        waiter.start();
+        waiter.join();
+        assertFalse(tryLockResult.get());
+        assertEquals(1, locker.getElementCount());
+        locker.unlock(1L);
+        assertEquals(0, locker.getElementCount());
+    }
+
+    @Test
+    public void testLockAllWithoutDeadlock() throws Exception {
+        Locker<String> locker = new Locker<>();
+        // "Aa" and "BB" have equal hash codes
+        ExecutorService executorService = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                boolean reverse = i % 2 == 0;
+                futures.add(executorService.submit(() -> {
+                    for (int j = 0; j < 200; j++) {
+                        locker.executeWithLocks(reverse ? Arrays.asList("BB", "Aa", "LOCKME") : Arrays.asList("LOCKME", "Aa", "BB"), () -> {
+                            assertTrue(locker.isHeldByCurrentThread("Aa"));
+                            assertTrue(locker.isHeldByCurrentThread("BB"));
+                            assertTrue(locker.isHeldByCurrentThread("LOCKME"));
+                        });
+                    }
+                }));
+            }
+            // Rethrows assertion errors of the threads (and fails on deadlock by the timeout)
+            for (Future<?> future : futures) {
+                future.get(10L, TimeUnit.SECONDS);
+            }
+        } finally {
+            executorService.shutdownNow();
+        }
+        assertEquals(0, locker.getElementCount());
+    }
+
+    @Test
+    public void testNestedLockAllWithEqualHashCodes() throws Exception {
+        Locker<String> locker = new Locker<>();
+        // "Aa"/"BB" and "AaAa"/"BBBB" have equal hash codes, "zzzz" has a higher hash code (so it is locked last)
+        locker.lock("zzzz");
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> other = executorService.submit(() -> {
+                locker.lockAll(Arrays.asList("BB", "zzzz", "Aa"));
+                locker.unlockAll(Arrays.asList("Aa", "BB", "zzzz"));
+            });
+            while (!locker.isLocked("Aa") || !locker.isLocked("BB")) {
+                Thread.sleep(1L);
+            }
+            // The other thread waits for "zzzz" (held by this thread), while it holds tied elements. This must not block unrelated tied elements.
+            locker.lockAll(Arrays.asList("BBBB", "AaAa"), 5L, TimeUnit.SECONDS);
+            locker.unlockAll(Arrays.asList("AaAa", "BBBB"));
+
+            locker.unlock("zzzz");
+            other.get(5L, TimeUnit.SECONDS);
+        } finally {
+            executorService.shutdownNow();
+        }
+        assertEquals(0, locker.getElementCount());
+    }
+
+    @Test
+    public void testLockAllReleasesOnTimeout() throws Exception {
+        Locker<String> locker = new Locker<>();
+        locker.lock("LOCK2");
+
+        AtomicBoolean timedOut = new AtomicBoolean();
+        AtomicBoolean tryLockResult = new AtomicBoolean(true);
+        runInOtherThread(() -> {
+            try {
+                locker.lockAll(Arrays.asList("LOCK1", "LOCK2", "LOCK3"), 20L, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                timedOut.set(true);
+            }
+            tryLockResult.set(locker.tryLockAll(Arrays.asList("LOCK1", "LOCK2", "LOCK3")));
+        });
+        assertTrue(timedOut.get());
+        assertFalse(tryLockResult.get());
+        assertFalse(locker.isLocked("LOCK1"));
+        assertFalse(locker.isLocked("LOCK3"));
+        assertEquals(1, locker.getElementCount());
+
+        locker.unlock("LOCK2");
+        assertTrue(locker.tryLockAll(Arrays.asList("LOCK1", "LOCK2", "LOCK2")));
+        locker.unlockAll(Arrays.asList("LOCK1", "LOCK2"));
+        assertEquals(0, locker.getElementCount());
+    }
+
+    @Test
+    public void testLockAsyncInFifoOrder() throws Exception {
+        Locker<String> locker = new Locker<>();
+        locker.lock("LOCKME");
+
+        List<Integer> order = new ArrayList<>();
+        List<CompletableFuture<LockHandle<String>>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            int number = i;
+            futures.add(locker.lockAsync("LOCKME").thenApply(lockHandle -> {
+                order.add(number);
+                return lockHandle;
+            }));
+        }
+        assertFalse(futures.get(0).isDone());
+
+        locker.unlock("LOCKME");
+        for (CompletableFuture<LockHandle<String>> future : futures) {
+            LockHandle<String> lockHandle = future.get(1, TimeUnit.SECONDS);
+            assertEquals("LOCKME", lockHandle.getElement());
+            assertTrue(locker.isLocked("LOCKME"));
+            lockHandle.unlock();
+            lockHandle.unlock(); // Ignored
+        }
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), order);
+        assertFalse(locker.isLocked("LOCKME"));
+        assertEquals(0, locker.getElementCount());
+    }
+
+    @Test
+    public void testLockAsyncTimeoutAndCancellation() throws Exception {
+        Locker<String> locker = new Locker<>();
+        locker.lock("LOCKME");
+
+        CompletableFuture<LockHandle<String>> timedOut = locker.lockAsync("LOCKME", 10L, TimeUnit.MILLISECONDS);
+        CompletableFuture<LockHandle<String>> cancelled = locker.lockAsync("LOCKME", Runnable::run);
+        CompletableFuture<LockHandle<String>> waiting = locker.lockAsync("LOCKME");
+        try {
+            timedOut.get(1, TimeUnit.SECONDS);
+            fail("Timeout expected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertTrue(cancelled.cancel(false));
+
+        locker.unlock("LOCKME");
+        LockHandle<String> lockHandle = waiting.get(1, TimeUnit.SECONDS);
+        assertTrue(locker.isLocked("LOCKME"));
+        assertFalse(locker.tryLock("LOCKME"));
+        lockHandle.unlock();
+        assertTrue(locker.tryLock("LOCKME"));
+        locker.unlock("LOCKME");
+        assertEquals(0, locker.getElementCount());
+    }
+
+    @Test
+    public void testVirtualThreadsDoNotPinCarrierThreads() throws Exception {
+        ThreadFactory virtualThreadFactory = ThreadUtils.getVirtualThreadFactory().orElse(null);
+        Assume.assumeNotNull(virtualThreadFactory); // Virtual threads need Java 21+
+
+        // The pinning of carrier threads is traced to System.out (see argLine of surefire)
+        PrintStream originalOut = System.out;
+        ByteArrayOutputStream tracedOut = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(tracedOut, true));
+        try {
+            Locker<String> locker = new Locker<>();
+            locker.lock("LOCKME");
+            // Far more waiting virtual threads than carrier threads (2 by argLine of surefire, 256 at most by default)
+            int threadCount = 10_000;
+            int[] counter = new int[1];
+            CountDownLatch done = new CountDownLatch(threadCount);
+            for (int i = 0; i < threadCount; i++) {
+                virtualThreadFactory.newThread(() -> {
+                    locker.executeWithLock("LOCKME", () -> counter[0]++);
+                    done.countDown();
+                }).start();
+            }
+            while (locker.getWaitingCount("LOCKME") < threadCount) {
+                Thread.sleep(10L);
+            }
+
+            // All virtual threads are waiting for the lock now. If they would pin their carrier threads, no other virtual thread could run.
+            CountDownLatch probe = new CountDownLatch(1);
+            virtualThreadFactory.newThread(probe::countDown).start();
+            assertTrue(probe.await(5, TimeUnit.SECONDS));
+
+            locker.unlock("LOCKME");
+            assertTrue(done.await(60, TimeUnit.SECONDS));
+            assertEquals(threadCount, counter[0]);
+            assertEquals(0, locker.getElementCount());
+        } finally {
+            System.setOut(originalOut);
+        }
+        assertFalse(tracedOut.toString(), tracedOut.toString().contains("<== monitors"));
+    }
+
+    @Test
+    public void testLeaseExpiry() throws Exception {
+        List<Thread> revokedThreads = new CopyOnWriteArrayList<>();
+        Locker<String> locker = new Locker<String>()
+                .withLeaseTime(50L, TimeUnit.MILLISECONDS)
+                .withLeaseRevokedListener((element, thread) -> revokedThreads.add(thread));
+        locker.lock("LOCKME");
+        locker.lock("LOCKME");
+
+        // The lock is handed over to the waiting thread after the lease is expired
+        AtomicBoolean locked = new AtomicBoolean();
+        runInOtherThread(() -> {
+            try {
+                locker.lock("LOCKME", 1L, TimeUnit.SECONDS);
+                locked.set(true);
+                locker.unlock("LOCKME");
+            } catch (TimeoutException e) {
+                locked.set(false);
+            }
+        });
+        assertTrue(locked.get());
+        assertEquals(Arrays.asList(Thread.currentThread()), revokedThreads);
+        assertFalse(locker.isHeldByCurrentThread("LOCKME"));
+
+        // Unlocking a revoked lock is ignored
+        locker.unlock("LOCKME");
+        assertEquals(0, locker.getElementCount());
+
+        // Released locks are not revoked
+        locker.executeWithLock("LOCKME", () -> {
+        });
+        Thread.sleep(100L);
+        assertEquals(1, revokedThreads.size());
+    }
+
+    @Test
+    public void testDeadlockDetection() throws Exception {
+        Locker<String> locker = new Locker<String>().withDeadlockDetection();
+        locker.lock("A");
+
+        CountDownLatch otherLocked = new CountDownLatch(1);
+        AtomicBoolean otherLockedBoth = new AtomicBoolean();
+        Thread other = new Thread(() -> {
+            locker.lock("B");
+            otherLocked.countDown();
+            locker.lock("A");
+            otherLockedBoth.set(true);
+            locker.unlock("A");
+            locker.unlock("B");
+        });
+        other.start();
+        assertTrue(otherLocked.await(1, TimeUnit.SECONDS));
+        while (locker.getWaitingCount("A") == 0) {
+            Thread.sleep(1L);
+        }
+
+        try {
+            locker.lock("B");
+            fail("Deadlock not detected");
+        } catch (DeadlockException e) {
+            assertEquals(Arrays.asList(Thread.currentThread(), other), e.getThreads());
+            assertEquals(Arrays.asList("B", "A"), e.getElements());
+        }
+        assertFalse(locker.isHeldByCurrentThread("B"));
+
+        // The other thread is not affected
+        locker.unlock("A");
+        other.join();
+        assertTrue(otherLockedBoth.get());
+        assertEquals(0, locker.getElementCount());
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        Locker<String> locker = new Locker<String>().withMetrics();
+        locker.lock("HOT");
+        Thread waiter = new Thread(() -> locker.executeWithLock("HOT", () -> {
+        }));
+        waiter.start();
+        while (locker.getWaitingCount("HOT") == 0) {
+            Thread.sleep(1L);
+        }
+        assertEquals(Integer.valueOf(1), locker.getWaitingCounts().get("HOT"));
+        runInOtherThread(() -> {
+            try {
+                locker.lock("HOT", 1L, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // expected
+            }
+        });
+        locker.executeWithLock("COLD", () -> {
+        });
+        Thread.sleep(10L);
+        locker.unlock("HOT");
+        waiter.join();
+
+        LockerMetrics<String> metrics = locker.getMetrics();
+        assertEquals(0, metrics.getElementCount());
+        assertEquals(3L, metrics.getLockCount());
+        assertEquals(2L, metrics.getContentionCount());
+        assertEquals(1L, metrics.getTimeoutCount());
+        assertEquals(3L, metrics.getHoldTime().getCount());
+        assertTrue(metrics.getHoldTime().getMax() >= TimeUnit.MILLISECONDS.toNanos(10L));
+        assertEquals(3L, metrics.getWaitTime().getCount());
+        assertEquals(Long.valueOf(2L), metrics.getHotElements().get("HOT"));
+        assertFalse(metrics.getHotElements().containsKey("COLD"));
+        assertTrue(metrics.getWaitingCounts().isEmpty());
+
+        locker.registerMBean("LockerTest");
+        try {
+            ObjectName objectName = new ObjectName("de.thksystems.util.concurrent:type=Locker,name=" + ObjectName.quote("LockerTest"));
+            assertEquals(3L, ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "LockCount"));
+        } finally {
+            locker.unregisterMBean();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMetricsNotEnabled() {
+        new Locker<String>().getMetrics();
+    }
+
+    @Test
     public void testWithGarbageCollection() throws Exception {
         Locker<String> locker = new Locker<>();
         String elem = "LOCKME" + System.currentTimeMillis();
+        String equalElem = new String(elem);
         locker.lock(elem);
 
-        WeakReference<String> ref = new WeakReference<String>(elem.intern());
+        WeakReference<String> ref = new WeakReference<String>(elem);
         elem = null;
+        System.gc();
+
+        // Equal elements share the same lock, independent of their instance
+        assertTrue(locker.isHeldByCurrentThread(new String(equalElem)));
+        AtomicBoolean lockedByOtherThread = new AtomicBoolean(true);
+        Thread otherThread = new Thread(() -> lockedByOtherThread.set(locker.tryLock(new String(equalElem))));
+        otherThread.start();
+        otherThread.join();
+        assertFalse(lockedByOtherThread.get());
+
+        locker.unlock(new String(equalElem));
+        assertFalse(locker.isHeldByCurrentThread(equalElem));
+        assertEquals(0, locker.getElementCount());
+
+        // The element is not kept by the locker after unlocking
         while (ref.get() != null) {
             System.gc();
         }
+    }
 
-        assertTrue(locker.isHeldByCurrentThread("LOCKME"));
+
+    private static void runInOtherThread(Runnable runnable) throws InterruptedException {
+        Thread thread = new Thread(runnable);
+        thread.start();
+        thread.join();
     }
 
     private final class Thread1 extends Thread {
@@ -0,0 +1,174 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class ReadWriteLockerTest {
+
+    @Test
+    public void testConcurrentReaders() throws Exception {
+        ReadWriteLocker<String> locker = new ReadWriteLocker<>();
+        locker.readLock("LOCKME");
+
+        AtomicBoolean readLocked = new AtomicBoolean();
+        AtomicBoolean writeLocked = new AtomicBoolean(true);
+        runInOtherThread(() -> {
+            readLocked.set(locker.tryReadLock("LOCKME"));
+            locker.unlockRead("LOCKME");
+            writeLocked.set(locker.tryLock("LOCKME"));
+        });
+        assertTrue(readLocked.get());
+        assertFalse(writeLocked.get());
+        assertTrue(locker.isReadLocked("LOCKME"));
+        assertFalse(locker.isLocked("LOCKME"));
+
+        locker.unlockRead("LOCKME");
+        assertFalse(locker.isReadLocked("LOCKME"));
+        assertEquals(0, locker.getElementCount());
+    }
+
+    @Test
+    public void testWriterExcludesReaders() throws Exception {
+        ReadWriteLocker<String> locker = new ReadWriteLocker<>();
+        locker.lock("LOCKME");
+        locker.lock("LOCKME");
+        assertTrue(locker.isHeldByCurrentThread("LOCKME"));
+
+        AtomicBoolean timedOut = new AtomicBoolean();
+        runInOtherThread(() -> {
+            try {
+                locker.readLock("LOCKME", 20L, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                timedOut.set(true);
+            }
+        });
+        assertTrue(timedOut.get());
+
+        locker.unlock("LOCKME");
+        locker.unlock("LOCKME");
+        AtomicBoolean readLocked = new AtomicBoolean();
+        runInOtherThread(() -> {
+            readLocked.set(locker.tryReadLock("LOCKME"));
+            locker.unlockRead("LOCKME");
+        });
+        assertTrue(readLocked.get());
+        assertEquals(0, locker.getElementCount());
+    }
+
+    @Test
+    public void testWriterPreference() throws Exception {
+        ReadWriteLocker<String> locker = new ReadWriteLocker<>(true);
+        locker.readLock("LOCKME");
+
+        CountDownLatch writeLocked = new CountDownLatch(1);
+        Thread writer = new Thread(() -> locker.executeWithLock("LOCKME", writeLocked::countDown));
+        writer.start();
+        Thread.sleep(50);
+
+        // The waiting writer blocks new readers ...
+        AtomicBoolean readLocked = new AtomicBoolean(true);
+        runInOtherThread(() -> readLocked.set(locker.tryReadLock("LOCKME")));
+        assertFalse(readLocked.get());
+        // ... but not reentrant ones
+        assertTrue(locker.tryReadLock("LOCKME"));
+
+        locker.unlockRead("LOCKME");
+        locker.unlockRead("LOCKME");
+        assertTrue(writeLocked.await(1, TimeUnit.SECONDS));
+        writer.join();
+    }
+
+    @Test
+    public void testUpgradeAndDowngrade() throws Exception {
+        ReadWriteLocker<String> locker = new ReadWriteLocker<>();
+        locker.readLock("LOCKME");
+        assertTrue(locker.tryUpgrade("LOCKME"));
+        assertTrue(locker.isHeldByCurrentThread("LOCKME"));
+        assertTrue(locker.isReadHeldByCurrentThread("LOCKME"));
+        locker.unlock("LOCKME");
+        assertFalse(locker.isHeldByCurrentThread("LOCKME"));
+        assertTrue(locker.isReadHeldByCurrentThread("LOCKME"));
+        locker.unlockRead("LOCKME");
+
+        locker.lock("LOCKME");
+        locker.downgrade("LOCKME");
+        assertFalse(locker.isHeldByCurrentThread("LOCKME"));
+        assertTrue(locker.isReadHeldByCurrentThread("LOCKME"));
+        AtomicBoolean readLocked = new AtomicBoolean();
+        runInOtherThread(() -> {
+            readLocked.set(locker.tryReadLock("LOCKME"));
+            locker.unlockRead("LOCKME");
+        });
+        assertTrue(readLocked.get());
+        locker.unlockRead("LOCKME");
+        assertEquals(0, locker.getElementCount());
+    }
+
+    @Test
+    public void testInterruptsDoNotRestartTimeout() throws Exception {
+        ReadWriteLocker<String> locker = new ReadWriteLocker<>();
+        locker.lock("LOCKME");
+
+        AtomicBoolean timedOut = new AtomicBoolean();
+        AtomicBoolean interruptStatus = new AtomicBoolean();
+        Thread waiter = new Thread(() -> {
+            try {
+                locker.readLock("LOCKME", 200L, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                timedOut.set(true);
+            }
+            interruptStatus.set(Thread.currentThread().isInterrupted());
+        });
+        waiter.start();
+        // Interrupting more often than the waiting time must not extend it
+        long end = System.currentTimeMillis() + 2_000L;
+        while (waiter.isAlive() && System.currentTimeMillis() < end) {
+            waiter.interrupt();
+            Thread.sleep(50L);
+        }
+        assertFalse(waiter.isAlive());
+        assertTrue(timedOut.get());
+        assertTrue(interruptStatus.get());
+
+        locker.unlock("LOCKME");
+        assertEquals(0, locker.getElementCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUpgradeWithoutReadLock() {
+        new ReadWriteLocker<String>().tryUpgrade("LOCKME");
+    }
+
+    @Test
+    public void testExecuteWithReadLock() {
+        ReadWriteLocker<String> locker = new ReadWriteLocker<>();
+        long result = locker.executeWithReadLock("LOCKME", () -> {
+            assertTrue(locker.isReadHeldByCurrentThread("LOCKME"));
+            return 5L;
+        });
+        assertEquals(5L, result);
+        assertFalse(locker.isReadLocked("LOCKME"));
+    }
+
+    private static void runInOtherThread(Runnable runnable) throws InterruptedException {
+        Thread thread = new Thread(runnable);
+        thread.start();
+        thread.join();
+    }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Test;
+
+public class TimerWheelTest {
+
+    @Test
+    public void testScheduleAndCancel() throws Exception {
+        TimerWheel timerWheel = new TimerWheel("test-timer-wheel", 1L, TimeUnit.MILLISECONDS, 8);
+
+        // More than one round of the wheel
+        int count = 1_000;
+        CountDownLatch expired = new CountDownLatch(count);
+        long startTime = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            timerWheel.schedule(expired::countDown, i % 50, TimeUnit.MILLISECONDS);
+        }
+        AtomicBoolean cancelledExpired = new AtomicBoolean();
+        TimerWheel.Timeout timeout = timerWheel.schedule(() -> cancelledExpired.set(true), 20L, TimeUnit.MILLISECONDS);
+        timeout.cancel();
+
+        assertTrue(expired.await(1, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - startTime >= TimeUnit.MILLISECONDS.toNanos(49L));
+        Thread.sleep(50L);
+        assertFalse(cancelledExpired.get());
+        assertEquals(0L, expired.getCount());
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent.scalingworkerqueue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class AdaptiveFetchSizingTest {
+
+    @Test
+    public void testSizing() {
+        AdaptiveFetchSizing sizing = new AdaptiveFetchSizing(10, 1_000);
+        assertFalse(sizing.update(4, 1)); // No measurements yet
+
+        sizing.recordProcessingTime(TimeUnit.MILLISECONDS.toNanos(20L), 2); // 10 ms per element
+        sizing.recordProcessingTime(TimeUnit.MILLISECONDS.toNanos(10L), 1);
+        sizing.recordSupplierLatency(TimeUnit.MILLISECONDS.toNanos(50L));
+        assertTrue(sizing.update(4, 1));
+
+        assertEquals(10.0, sizing.getAverageProcessingTime(), 0.001);
+        assertEquals(50.0, sizing.getAverageSupplierLatency(), 0.001);
+        assertEquals(400.0, sizing.getConsumptionRate(), 0.001); // 4 workers * 100 elements/s
+        assertEquals(40, sizing.getTargetSpareElementCount()); // 400 elements/s * 50 ms * 2
+        assertEquals(4 + 2 * 40 - 10, sizing.getFetchCount(4, 10));
+        assertEquals(1, sizing.getFetchCount(0, 500));
+    }
+
+    @Test
+    public void testBounds() {
+        AdaptiveFetchSizing sizing = new AdaptiveFetchSizing(10, 100);
+        sizing.recordProcessingTime(TimeUnit.MICROSECONDS.toNanos(10L), 1);
+        sizing.recordSupplierLatency(TimeUnit.MILLISECONDS.toNanos(500L));
+        assertTrue(sizing.update(10, 5));
+        assertEquals(100, sizing.getTargetSpareElementCount());
+        assertEquals(100, sizing.getFetchCount(10, 0));
+
+        // Slow processing, fast supplier
+        sizing = new AdaptiveFetchSizing(10, 100);
+        sizing.recordProcessingTime(TimeUnit.SECONDS.toNanos(10L), 1);
+        sizing.recordSupplierLatency(TimeUnit.MILLISECONDS.toNanos(1L));
+        assertTrue(sizing.update(1, 5));
+        assertEquals(5, sizing.getTargetSpareElementCount());
+    }
+
+    @Test
+    public void testMovingWindow() {
+        AdaptiveFetchSizing sizing = new AdaptiveFetchSizing(2, 100);
+        sizing.recordSupplierLatency(TimeUnit.MILLISECONDS.toNanos(100L));
+        sizing.recordSupplierLatency(TimeUnit.MILLISECONDS.toNanos(10L));
+        sizing.recordSupplierLatency(TimeUnit.MILLISECONDS.toNanos(20L));
+        assertEquals(15.0, sizing.getAverageSupplierLatency(), 0.001);
+    }
+
+}
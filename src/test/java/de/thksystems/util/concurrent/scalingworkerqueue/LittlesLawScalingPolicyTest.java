@@ -0,0 +1,71 @@
+/*
+ * tksCommons
+ *
+ * Author  : Thomas Kuhlmann (ThK-Systems, https://www.thk-systems.de)
+ * License : LGPL (https://www.gnu.org/licenses/lgpl.html)
+ */
+
+package de.thksystems.util.concurrent.scalingworkerqueue;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class LittlesLawScalingPolicyTest {
+
+    @Test
+    public void testScaleUp() {
+        LittlesLawScalingPolicy policy = new LittlesLawScalingPolicy();
+        assertEquals(2, policy.getTargetRunnerCount(state(0L, 2, 0, 0, 10, 10, 0L, 0L)));
+        // 2 busy runners processed 200 elements (10 ms each) and the queue grew by 100 elements:
+        // (300 elements/s * 10 ms + 100 elements * 10 ms / 1 s) / 0.8 = 5
+        assertEquals(5, policy.getTargetRunnerCount(state(1_000L, 2, 100, 2, 10, 10, 200L, 2_000L)));
+    }
+
+    @Test
+    public void testNoMeasurements() {
+        LittlesLawScalingPolicy policy = new LittlesLawScalingPolicy();
+        // Elements must not wait without runner
+        assertEquals(1, policy.getTargetRunnerCount(state(0L, 0, 5, 0, 10, 5, 0L, 0L)));
+        assertEquals(1, policy.getTargetRunnerCount(state(100L, 0, 5, 0, 10, 5, 0L, 0L)));
+        // No element finished, but there are elements in work -> one more runner
+        assertEquals(2, policy.getTargetRunnerCount(state(1_000L, 1, 5, 1, 10, 5, 0L, 1_000L)));
+    }
+
+    @Test
+    public void testScaleDownWithHysteresis() {
+        LittlesLawScalingPolicy policy = new LittlesLawScalingPolicy().withScaleDownDelay(5_000L);
+        assertEquals(10, policy.getTargetRunnerCount(state(0L, 10, 0, 0, 30, 30, 0L, 0L)));
+        // 100 elements/s * 10 ms / 0.8 -> 2 runners would do, but the scale down delay is not over yet
+        assertEquals(10, policy.getTargetRunnerCount(state(1_000L, 10, 0, 1, 30, 5, 100L, 1_000L)));
+        // Backlog at the supplier (the fetch was full) -> no scaling down
+        assertEquals(10, policy.getTargetRunnerCount(state(6_000L, 10, 0, 1, 30, 30, 600L, 6_000L)));
+        // A quarter of the runners (at most) is stopped at once
+        assertEquals(8, policy.getTargetRunnerCount(state(7_000L, 10, 0, 1, 30, 5, 700L, 7_000L)));
+        // ... then the delay starts again
+        assertEquals(10, policy.getTargetRunnerCount(state(8_000L, 10, 0, 1, 30, 5, 800L, 8_000L)));
+        // Within the hysteresis -> no scaling down
+        LittlesLawScalingPolicy policy2 = new LittlesLawScalingPolicy().withScaleDownDelay(0L);
+        assertEquals(4, policy2.getTargetRunnerCount(state(0L, 4, 0, 0, 30, 5, 0L, 0L)));
+        assertEquals(4, policy2.getTargetRunnerCount(state(1_000L, 4, 0, 3, 30, 5, 240L, 2_400L))); // Target 3 is not clearly lower
+    }
+
+    @Test
+    public void testScaleDownOnSaturation() {
+        LittlesLawScalingPolicy policy = new LittlesLawScalingPolicy();
+        assertEquals(8, policy.getTargetRunnerCount(state(0L, 8, 10, 8, 20, 20, 0L, 0L)));
+        // 8 busy runners, 10 ms per element (baseline) -> (800 elements/s * 10 ms + 10 elements * 10 ms / 1 s) / 0.8 = 11
+        assertEquals(11, policy.getTargetRunnerCount(state(1_000L, 8, 10, 8, 20, 20, 800L, 8_000L)));
+        // Busy runners, but 40 ms per element -> saturated downstream
+        assertEquals(9, policy.getTargetRunnerCount(state(2_000L, 11, 10, 11, 20, 20, 1_000L, 16_000L)));
+    }
+
+    private static ScalingState state(long millis, int runnerCount, int queueSize, int elementsInWorkCount, int requestedCount, int fetchedCount,
+            long processedCount, long processingMillis) {
+        return new ScalingState(TimeUnit.MILLISECONDS.toNanos(millis), runnerCount, 1, 20, queueSize, elementsInWorkCount, requestedCount, fetchedCount,
+                processedCount, TimeUnit.MILLISECONDS.toNanos(processingMillis));
+    }
+
+}
@@ -7,17 +7,31 @@
 
 package de.thksystems.util.concurrent.scalingworkerqueue;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
+import javax.management.ObjectName;
+
 import org.junit.Ignore;
 import org.junit.Test;
 
-@Ignore
 public class ScalingWorkerQueueTest {
 
+    @Ignore
     @Test
     public void testScalingWorkerQueue() {
         @SuppressWarnings("unchecked") DefaultConfiguredScalingWorkerQueue<Long> swq = new DefaultConfiguredScalingWorkerQueue((n) -> Arrays.asList(1L, 6L, 33L, 57L, -45L), (e, c) -> sleepWithoutException(212L));
@@ -27,6 +41,7 @@ public class ScalingWorkerQueueTest {
         sleepWithoutException(1_000L);
     }
 
+    @Ignore
     @Test
     public void testDieingIdleWorker() {
         Function<Integer, Collection<Long>> supplierFunction = new Function<Integer, Collection<Long>>() {
@@ -49,6 +64,282 @@ public class ScalingWorkerQueueTest {
         sleepWithoutException(1_000L);
     }
 
+    @Test
+    public void testIdleRunnerIsWokenUp() throws Exception {
+        // Each fetch supplies a single element (its supply time) after some time, so the runner is idle in between
+        AtomicInteger fetchCount = new AtomicInteger();
+        Function<Integer, Collection<Long>> supplierFunction = count -> {
+            if (fetchCount.incrementAndGet() > 5) {
+                return Collections.emptyList();
+            }
+            sleepWithoutException(100L);
+            return Collections.singletonList(System.nanoTime());
+        };
+        List<Long> latencies = new CopyOnWriteArrayList<>();
+        WorkerQueueConfiguration configuration = new DefaultWorkerQueueConfiguration() {
+            @Override
+            public long getRunnerSleepIdlePeriod() {
+                return 10_000L;
+            }
+        };
+        ScalingWorkerQueue<Long, WorkerQueueConfiguration> swq = new ScalingWorkerQueue<>(configuration, supplierFunction,
+                (element, config) -> latencies.add(System.nanoTime() - element));
+        swq.start(true);
+        long timeout = System.currentTimeMillis() + 5_000L;
+        while (latencies.size() < 5 && System.currentTimeMillis() < timeout) {
+            sleepWithoutException(10L);
+        }
+        swq.stop(true);
+
+        assertEquals(5, latencies.size());
+        for (long latency : latencies) {
+            assertTrue("Latency: " + latency + " ns", latency < TimeUnit.MILLISECONDS.toNanos(250L));
+        }
+    }
+
+    @Test
+    public void testDuplicatesAreSkipped() throws Exception {
+        // The same elements are fetched again, while they are in the queue or in work
+        Function<Integer, Collection<Long>> supplierFunction = count -> Arrays.asList(1L, 2L, 2L);
+        Map<Long, Integer> processCounts = new ConcurrentHashMap<>();
+        DefaultConfiguredScalingWorkerQueue<Long> swq = new DefaultConfiguredScalingWorkerQueue<>(supplierFunction, (element, config) -> {
+            processCounts.merge(element, 1, Integer::sum);
+            sleepWithoutException(200L);
+        });
+        swq.start(true);
+        sleepWithoutException(1_000L);
+        swq.stop(true);
+
+        assertEquals(Integer.valueOf(1), processCounts.get(1L));
+        assertEquals(Integer.valueOf(1), processCounts.get(2L));
+    }
+
+    @Test
+    public void testThreadPerElement() throws Exception {
+        int elementCount = 1_000;
+        int maxConcurrentElements = 200;
+        AtomicInteger fetchedCount = new AtomicInteger();
+        Function<Integer, Collection<Integer>> supplierFunction = count -> {
+            List<Integer> elements = new ArrayList<>();
+            while (elements.size() < count && fetchedCount.get() < elementCount) {
+                elements.add(fetchedCount.getAndIncrement());
+            }
+            return elements;
+        };
+        AtomicInteger concurrentCount = new AtomicInteger();
+        AtomicInteger maxConcurrentCount = new AtomicInteger();
+        AtomicInteger processedCount = new AtomicInteger();
+        DefaultConfiguredScalingWorkerQueue<Integer> swq = new DefaultConfiguredScalingWorkerQueue<>(supplierFunction, (element, config) -> {
+            maxConcurrentCount.accumulateAndGet(concurrentCount.incrementAndGet(), Math::max);
+            sleepWithoutException(100L); // Blocking I/O
+            concurrentCount.decrementAndGet();
+            processedCount.incrementAndGet();
+        });
+        swq.withThreadPerElement(maxConcurrentElements);
+        swq.start(true);
+        long timeout = System.currentTimeMillis() + 10_000L;
+        while (processedCount.get() < elementCount && System.currentTimeMillis() < timeout) {
+            sleepWithoutException(10L);
+        }
+        swq.stop(true);
+
+        assertEquals(elementCount, processedCount.get());
+        // Far more elements than the (maximum) count of runners are processed concurrently, but not more than allowed
+        assertTrue("Max concurrent: " + maxConcurrentCount.get(), maxConcurrentCount.get() > DefaultWorkerQueueConfiguration.DEFAULT_MAX_RUNNER_COUNT * 5);
+        assertTrue("Max concurrent: " + maxConcurrentCount.get(), maxConcurrentCount.get() <= maxConcurrentElements);
+        assertEquals(0, swq.getRunnersCount());
+        assertEquals(0, swq.getElementsInWorkCount());
+    }
+
+    @Test
+    public void testBatchWorker() throws Exception {
+        int elementCount = 100;
+        int maxBatchSize = 10;
+        AtomicInteger fetchedCount = new AtomicInteger();
+        Function<Integer, Collection<Integer>> supplierFunction = count -> {
+            List<Integer> elements = new ArrayList<>();
+            while (elements.size() < count && fetchedCount.get() < elementCount) {
+                elements.add(fetchedCount.getAndIncrement());
+            }
+            return elements;
+        };
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        Set<Integer> processedElements = ConcurrentHashMap.newKeySet();
+        Set<Integer> failedElements = ConcurrentHashMap.newKeySet();
+        Set<Integer> lockedElements = ConcurrentHashMap.newKeySet();
+        AtomicInteger unlockCount = new AtomicInteger();
+        // Observations of the worker threads (asserted by the test thread, because the queue catches everything thrown by the workers)
+        AtomicInteger singleWorkerCallCount = new AtomicInteger();
+        List<List<Integer>> notLockedBatches = new CopyOnWriteArrayList<>();
+        DefaultConfiguredScalingWorkerQueue<Integer> swq = new DefaultConfiguredScalingWorkerQueue<>(supplierFunction,
+                (element, config) -> singleWorkerCallCount.incrementAndGet());
+        swq.withBatchWorker((elements, config) -> {
+            batchSizes.add(elements.size());
+            if (!lockedElements.containsAll(elements)) { // The whole batch must be locked
+                notLockedBatches.add(new ArrayList<>(elements));
+            }
+            processedElements.addAll(elements);
+            return elements.contains(7) ? Collections.singletonMap(7, new IllegalStateException("Failing element")) : Collections.emptyMap();
+        }, maxBatchSize, 50L);
+        swq.withDistributedSetup(lockedElements::add, element -> {
+            lockedElements.remove(element);
+            unlockCount.incrementAndGet();
+        }, null);
+        swq.withEventListener(ScalingWorkerQueue.ListenerEvent.PROCESSING_FAILED, (threadId, element) -> failedElements.add(element));
+        swq.start(true);
+        long timeout = System.currentTimeMillis() + 10_000L;
+        while (processedElements.size() < elementCount && System.currentTimeMillis() < timeout) {
+            sleepWithoutException(10L);
+        }
+        swq.stop(true);
+
+        assertEquals(0, singleWorkerCallCount.get());
+        assertEquals(Collections.emptyList(), notLockedBatches);
+        assertEquals(elementCount, processedElements.size());
+        assertEquals(Collections.singleton(7), failedElements);
+        assertEquals(elementCount, unlockCount.get());
+        assertTrue(lockedElements.isEmpty());
+        assertTrue("Batch sizes: " + batchSizes, batchSizes.stream().allMatch(size -> size <= maxBatchSize));
+        assertTrue("Batch sizes: " + batchSizes, batchSizes.size() < elementCount / 2);
+    }
+
+    @Test
+    public void testAdaptiveFetchSize() throws Exception {
+        AtomicInteger fetchedCount = new AtomicInteger();
+        AtomicInteger maxRequestedCount = new AtomicInteger();
+        Function<Integer, Collection<Integer>> supplierFunction = count -> {
+            maxRequestedCount.accumulateAndGet(count, Math::max);
+            sleepWithoutException(50L); // Supplier latency
+            List<Integer> elements = new ArrayList<>();
+            while (elements.size() < count) {
+                elements.add(fetchedCount.getAndIncrement());
+            }
+            return elements;
+        };
+        AtomicInteger processedCount = new AtomicInteger();
+        DefaultConfiguredScalingWorkerQueue<Integer> swq = new DefaultConfiguredScalingWorkerQueue<>(supplierFunction, (element, config) -> {
+            sleepWithoutException(5L);
+            processedCount.incrementAndGet();
+        });
+        swq.withThreadPerElement(20).withAdaptiveFetchSize(50, 500);
+        swq.start(true);
+        sleepWithoutException(2_000L);
+        swq.stop(true);
+
+        assertTrue("Processed: " + processedCount.get(), processedCount.get() > 0);
+        assertTrue("Processing time: " + swq.getAverageProcessingTime(), swq.getAverageProcessingTime() >= 4.0);
+        assertTrue("Supplier latency: " + swq.getAverageSupplierLatency(), swq.getAverageSupplierLatency() >= 45.0);
+        assertTrue("Consumption rate: " + swq.getEstimatedConsumptionRate(), swq.getEstimatedConsumptionRate() > 0.0);
+        // The spare elements cover the consumption during a fetch (far more than configured), but are bounded
+        assertTrue("Spare elements: " + swq.getTargetSpareElementCount(), swq.getTargetSpareElementCount() > DefaultWorkerQueueConfiguration.DEFAULT_SPARE_ELEMENTS_COUNT_TO_SUPPLY * 10);
+        assertTrue("Spare elements: " + swq.getTargetSpareElementCount(), swq.getTargetSpareElementCount() <= 500);
+        assertTrue("Requested: " + maxRequestedCount.get(), maxRequestedCount.get() <= 500);
+    }
+
+    @Test
+    public void testScalingPolicy() throws Exception {
+        AtomicInteger fetchedCount = new AtomicInteger();
+        Function<Integer, Collection<Integer>> supplierFunction = count -> {
+            List<Integer> elements = new ArrayList<>();
+            while (elements.size() < count) {
+                elements.add(fetchedCount.getAndIncrement());
+            }
+            return elements;
+        };
+        AtomicInteger targetRunnerCount = new AtomicInteger(4);
+        List<ScalingState> states = new CopyOnWriteArrayList<>();
+        DefaultConfiguredScalingWorkerQueue<Integer> swq = new DefaultConfiguredScalingWorkerQueue<>(supplierFunction, (element, config) -> sleepWithoutException(10L));
+        swq.withScalingPolicy(state -> {
+            states.add(state);
+            return targetRunnerCount.get();
+        });
+        swq.start(true);
+        sleepWithoutException(1_000L);
+        assertEquals(4, swq.getRunnersCount());
+
+        targetRunnerCount.set(100); // Bounded by the maximum count of runners
+        sleepWithoutException(1_000L);
+        assertEquals(DefaultWorkerQueueConfiguration.DEFAULT_MAX_RUNNER_COUNT, swq.getRunnersCount());
+
+        targetRunnerCount.set(0); // Bounded by the minimum count of runners
+        sleepWithoutException(1_000L);
+        assertEquals(DefaultWorkerQueueConfiguration.DEFAULT_MIN_RUNNER_COUNT, swq.getRunnersCount());
+        swq.stop(true);
+
+        ScalingState lastState = states.get(states.size() - 1);
+        assertTrue(lastState.toString(), lastState.getProcessedCount() > 0L);
+        assertTrue(lastState.toString(), lastState.getProcessingTime() >= TimeUnit.MILLISECONDS.toNanos(10L) * lastState.getProcessedCount());
+    }
+
+    @Test
+    public void testMetrics() throws Exception {
+        AtomicInteger fetchCount = new AtomicInteger();
+        Function<Integer, Collection<Long>> supplierFunction = count -> fetchCount.getAndIncrement() == 0 ? Arrays.asList(1L, 2L, 2L, 3L) : Collections.emptyList();
+        DefaultConfiguredScalingWorkerQueue<Long> swq = new DefaultConfiguredScalingWorkerQueue<>(supplierFunction, (element, config) -> {
+            sleepWithoutException(50L);
+            if (element == 3L) {
+                throw new IllegalStateException("Failing element");
+            }
+        });
+        swq.registerMBean("ScalingWorkerQueueTest");
+        try {
+            swq.start(true);
+            long timeout = System.currentTimeMillis() + 5_000L;
+            while (swq.getMetrics().getProcessedCount() < 3L && System.currentTimeMillis() < timeout) {
+                sleepWithoutException(10L);
+            }
+            WorkerQueueMetrics metrics = swq.getMetrics();
+            assertEquals(metrics.toString(), 4L, metrics.getFetchedCount());
+            assertEquals(metrics.toString(), 3L, metrics.getAddedCount());
+            assertEquals(metrics.toString(), 1L, metrics.getSkippedCount());
+            assertEquals(metrics.toString(), 3L, metrics.getProcessedCount());
+            assertEquals(metrics.toString(), 1L, metrics.getFailedCount());
+            assertEquals(metrics.toString(), 0, metrics.getQueueSize());
+            assertEquals(metrics.toString(), 0, metrics.getElementsInWorkCount());
+            assertEquals(metrics.toString(), 3L, metrics.getTimeInQueue().getCount());
+            assertEquals(metrics.toString(), 3L, metrics.getProcessingTime().getCount());
+            assertTrue(metrics.toString(), metrics.getProcessingTime().getMean() >= TimeUnit.MILLISECONDS.toNanos(50L));
+            assertTrue(metrics.toString(), metrics.getSupplierLatency().getCount() >= 1L);
+            assertTrue(metrics.toString(), metrics.getBusyRatio() > 0.0 && metrics.getBusyRatio() <= 1.0);
+
+            ObjectName objectName = new ObjectName("de.thksystems.util.concurrent:type=ScalingWorkerQueue,name=" + ObjectName.quote("ScalingWorkerQueueTest"));
+            assertEquals(3L, ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "ProcessedCount"));
+            assertEquals(1L, ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "SkippedCount"));
+        } finally {
+            swq.stop(true);
+            swq.unregisterMBean();
+        }
+    }
+
+    @Test
+    public void testMetricsCountOnlyWorkedElements() throws Exception {
+        AtomicInteger fetchCount = new AtomicInteger();
+        Function<Integer, Collection<Long>> supplierFunction = count -> fetchCount.getAndIncrement() == 0 ? Arrays.asList(1L, 2L, 3L) : Collections.emptyList();
+        Set<Long> workedElements = ConcurrentHashMap.newKeySet();
+        DefaultConfiguredScalingWorkerQueue<Long> swq = new DefaultConfiguredScalingWorkerQueue<>(supplierFunction, (element, config) -> workedElements.add(element));
+        swq.withDistributedSetup(element -> element != 2L, element -> {
+        }, element -> element != 3L).withMetrics();
+        try {
+            swq.start(true);
+            long timeout = System.currentTimeMillis() + 5_000L;
+            while ((fetchCount.get() < 2 || swq.getQueueSize() > 0 || swq.getElementsInWorkCount() > 0) && System.currentTimeMillis() < timeout) {
+                sleepWithoutException(10L);
+            }
+            WorkerQueueMetrics metrics = swq.getMetrics();
+            assertEquals(metrics.toString(), Collections.singleton(1L), workedElements);
+            assertEquals(metrics.toString(), 3L, metrics.getAddedCount());
+            assertEquals(metrics.toString(), 1L, metrics.getProcessedCount());
+        } finally {
+            swq.stop(true);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testMetricsNotEnabled() {
+        new DefaultConfiguredScalingWorkerQueue<Long>(count -> Collections.emptyList(), (element, config) -> {
+        }).getMetrics();
+    }
+
     private void sleepWithoutException(long l) {
         try {
             Thread.sleep(l);